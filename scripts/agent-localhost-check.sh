@@ -0,0 +1,85 @@
+#!/usr/bin/env bash
+# 多机代理模式的本机端到端检查：在127.0.0.1上启动两个代理，协调者让每个代理启动子进程，
+# 检查启动屏障、输出转发、按代理汇总和最终校验，并确认代理拒绝非nfs.test参数
+#
+# 用法：scripts/agent-localhost-check.sh [每个代理的子进程数] [周期数]
+set -euo pipefail
+
+PROCESSES=${1:-2}
+CYCLES=${2:-2}
+PORT1=${AGENT_PORT1:-17421}
+PORT2=${AGENT_PORT2:-17422}
+TIMEOUT_SECONDS=${CHECK_TIMEOUT_SECONDS:-300}
+
+PROJECT_DIR=$(cd "$(dirname "$0")/.." && pwd)
+JAR="$PROJECT_DIR/target/sqlite-nfs-test-1.0-SNAPSHOT.jar"
+WORK_DIR=$(mktemp -d -t nfs-agent-check-XXXXXX)
+AGENT_PIDS=()
+
+cleanup() {
+    for pid in "${AGENT_PIDS[@]}"; do
+        kill "$pid" 2>/dev/null || true
+    done
+    [[ -n "${MAIN_PID:-}" ]] && kill "$MAIN_PID" 2>/dev/null || true
+}
+trap cleanup EXIT
+
+fail() {
+    echo "FAILED: $1" >&2
+    echo "Logs in $WORK_DIR" >&2
+    exit 1
+}
+
+# 等待日志中出现指定内容，超时返回1
+wait_for() {
+    local file=$1 pattern=$2 seconds=$3
+    for ((i = 0; i < seconds * 10; i++)); do
+        grep -q -- "$pattern" "$file" 2>/dev/null && return 0
+        sleep 0.1
+    done
+    return 1
+}
+
+if [[ -z "${SKIP_BUILD:-}" ]]; then
+    (cd "$PROJECT_DIR" && mvn -B -q package -DskipTests)
+fi
+
+cd "$WORK_DIR"
+for port in "$PORT1" "$PORT2"; do
+    java -Dnfs.test.agent.bind=127.0.0.1 -jar "$JAR" --agent "$port" > "agent-$port.log" 2>&1 &
+    AGENT_PIDS+=($!)
+    wait_for "agent-$port.log" "Agent listening on 127.0.0.1:$port" 30 || fail "agent on port $port did not start"
+done
+
+# 代理只接受-Dnfs.test.*=参数，其他JVM参数会使会话被拒绝
+printf 'OPTION -XX:OnError=true\nRUN rogue 1 1 0 %s\n' "$WORK_DIR/rogue.db" > /dev/tcp/127.0.0.1/"$PORT1"
+wait_for "agent-$PORT1.log" "Rejected option" 10 || fail "agent accepted a non nfs.test option"
+[[ ! -e "$WORK_DIR/rogue.db" ]] || fail "agent started a child for a rejected session"
+
+java -Dnfs.test.agents=127.0.0.1:"$PORT1",127.0.0.1:"$PORT2" -Dnfs.test.agent.bind=127.0.0.1 \
+     -jar "$JAR" "$PROCESSES" "$WORK_DIR/agents.db" "$CYCLES" > main.log 2>&1 &
+MAIN_PID=$!
+
+for ((i = 0; i < TIMEOUT_SECONDS * 10; i++)); do
+    if grep -q -e "test completed successfully" -e "Multi-process test failed" main.log; then
+        break
+    fi
+    kill -0 "$MAIN_PID" 2>/dev/null || break
+    sleep 0.1
+done
+
+grep -q "Released start barrier on 2 agents" main.log || fail "start barrier was not released on both agents"
+for agent in agent1 agent2; do
+    for ((n = 1; n <= PROCESSES; n++)); do
+        grep -q "Child process $agent-ChildProcess-$n completed successfully" main.log \
+            || fail "$agent-ChildProcess-$n did not complete successfully"
+    done
+done
+grep -q "=== Agent Results ===" main.log || fail "no per-agent summary"
+grep -q "Comprehensive health check: PASSED" main.log || fail "final verification did not pass"
+if grep -q "timed out waiting for start signal" main.log; then
+    fail "a child process started without the barrier"
+fi
+
+echo "OK: 2 agents x $PROCESSES child processes on 127.0.0.1, $CYCLES cycles, verification passed"
+rm -rf "$WORK_DIR"
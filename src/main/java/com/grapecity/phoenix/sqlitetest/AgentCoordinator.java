@@ -0,0 +1,244 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 多机协调者 - 连接各台机器上的代理，分发运行参数、统一释放启动屏障，并收集子进程输出和退出码
+ * 每个远程子进程对应一个CompletableFuture，主进程后续的监控流程与本地子进程完全相同
+ */
+public class AgentCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentCoordinator.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final List<Agent> agents = new ArrayList<>();
+    private final BiConsumer<String, String> outputHandler;
+    private final Map<String, CompletableFuture<Integer>> children = new ConcurrentHashMap<>();
+    private long launchMillis;
+
+    /**
+     * @param outputHandler 处理子进程输出行（进程名, 输出行）
+     */
+    public AgentCoordinator(List<String> agentAddresses, BiConsumer<String, String> outputHandler) {
+        this.outputHandler = outputHandler;
+        for (int i = 0; i < agentAddresses.size(); i++) {
+            agents.add(new Agent("agent" + (i + 1), agentAddresses.get(i)));
+        }
+    }
+
+    /**
+     * 连接所有代理并让每个代理启动processesPerAgent个子进程，返回的进程名按代理顺序排列
+     */
+    public Map<String, CompletableFuture<Integer>> launch(int processesPerAgent, String databasePath,
+                                                          int maxCycles, int runTimeSeconds) {
+        Map<String, CompletableFuture<Integer>> launched = new LinkedHashMap<>();
+        launchMillis = System.currentTimeMillis();
+        for (Agent agent : agents) {
+            agent.connect();
+            for (int i = 1; i <= processesPerAgent; i++) {
+                String processName = agent.name + "-ChildProcess-" + i;
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                children.put(processName, future);
+                launched.put(processName, future);
+                agent.processNames.add(processName);
+            }
+            for (String argument : TestOptions.toJvmArguments()) {
+                // 自适应节奏和JFR记录依赖与本地子进程的直接交互，不传给远程子进程
+                if (!argument.startsWith("-Dnfs.test.adaptive.") && !argument.startsWith("-Dnfs.test.jfr.")) {
+                    agent.send(AgentProtocol.OPTION + argument);
+                }
+            }
+            agent.send(AgentProtocol.RUN + agent.name + " " + processesPerAgent + " " + maxCycles + " "
+                       + runTimeSeconds + " " + databasePath);
+            agent.startReader();
+            logger.info("Agent {} ({}) launching {} child processes", agent.name, agent.address, processesPerAgent);
+        }
+        return launched;
+    }
+
+    /**
+     * 等待所有代理报告就绪后同时释放启动屏障
+     * 超时从启动第一个代理开始计算，并且小于子进程等待启动信号的时间，慢的代理不会让其他代理的子进程自行开始
+     */
+    public void releaseStartBarrier() {
+        logger.info("Waiting for {} agents to report ready...", agents.size());
+        long deadline = launchMillis + AgentProtocol.BARRIER_TIMEOUT_MILLIS;
+        for (Agent agent : agents) {
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (!agent.ready.await(remaining, TimeUnit.MILLISECONDS)) {
+                    throw new NfsTestException("Agent " + agent.name + " (" + agent.address + ") did not become ready");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NfsTestException("Interrupted while waiting for agents", e);
+            }
+            logger.info("Agent {} ready with {} child processes", agent.name, agent.readyCount);
+        }
+        for (Agent agent : agents) {
+            agent.send(AgentProtocol.START);
+        }
+        logger.info("Released start barrier on {} agents", agents.size());
+    }
+
+    public void close() {
+        for (Agent agent : agents) {
+            agent.close();
+        }
+    }
+
+    /**
+     * 按代理汇总吞吐和子进程结果
+     */
+    public void logSummary(MetricsCollector metricsCollector) {
+        List<MetricsSnapshot> snapshots = metricsCollector.getAllSnapshots();
+        logger.info("=== Agent Results ===");
+        for (Agent agent : agents) {
+            long operations = 0;
+            long busyErrors = 0;
+            long from = Long.MAX_VALUE;
+            long to = 0;
+            for (MetricsSnapshot snapshot : snapshots) {
+                if (agent.processNames.contains(snapshot.getProcessName())) {
+                    operations += snapshot.getOperations();
+                    busyErrors += snapshot.getBusyErrors();
+                    from = Math.min(from, snapshot.getStartMillis());
+                    to = Math.max(to, snapshot.getEndMillis());
+                }
+            }
+            int succeeded = 0;
+            int corrupted = 0;
+            int failed = 0;
+            for (String processName : agent.processNames) {
+                Integer exitCode = children.get(processName).getNow(null);
+                if (exitCode == null || (exitCode != 0 && exitCode != 2)) {
+                    failed++;
+                } else if (exitCode == 2) {
+                    corrupted++;
+                } else {
+                    succeeded++;
+                }
+            }
+            logger.info("{} ({}): writes={}, writes/s={}, busy errors={}, processes ok={}, corruption={}, failed={}",
+                        agent.name, agent.address, operations,
+                        String.format("%.1f", to > from ? operations * 1000.0 / (to - from) : 0.0),
+                        busyErrors, succeeded, corrupted, failed);
+        }
+    }
+
+    /**
+     * 一个代理连接
+     */
+    private class Agent {
+        private final String name;
+        private final String address;
+        private final List<String> processNames = new ArrayList<>();
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile int readyCount;
+        private Socket socket;
+        private PrintWriter out;
+
+        Agent(String name, String address) {
+            this.name = name;
+            this.address = address;
+        }
+
+        void connect() {
+            int separator = address.lastIndexOf(':');
+            String host = separator > 0 ? address.substring(0, separator) : address;
+            int port = separator > 0 ? Integer.parseInt(address.substring(separator + 1)) : AgentProtocol.DEFAULT_PORT;
+            try {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new NfsTestException("Failed to connect to agent " + address, e);
+            }
+        }
+
+        void send(String line) {
+            out.println(line);
+        }
+
+        void startReader() {
+            Thread reader = new Thread(this::readLoop, name + "-Reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void readLoop() {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(AgentProtocol.OUT + " ")) {
+                        String[] fields = AgentProtocol.argument(line).split(" ", 2);
+                        outputHandler.accept(fields[0], fields.length > 1 ? fields[1] : "");
+                    } else if (line.startsWith(AgentProtocol.EXIT + " ")) {
+                        String[] fields = AgentProtocol.argument(line).split(" ");
+                        complete(fields[0], Integer.parseInt(fields[1]));
+                    } else if (line.startsWith(AgentProtocol.READY)) {
+                        readyCount = Integer.parseInt(AgentProtocol.argument(line));
+                        ready.countDown();
+                    } else if (line.equals(AgentProtocol.DONE)) {
+                        logger.info("Agent {} finished", name);
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Lost connection to agent {} ({})", name, address, e);
+            } finally {
+                // 连接断开时没有报告退出码的子进程按失败处理
+                for (String processName : processNames) {
+                    if (complete(processName, -1)) {
+                        logger.error("Child process {} on agent {} ended without exit code", processName, name);
+                    }
+                }
+                ready.countDown();
+            }
+        }
+
+        private boolean complete(String processName, int exitCode) {
+            CompletableFuture<Integer> future = children.get(processName);
+            if (future == null || !future.complete(exitCode)) {
+                return false;
+            }
+            if (exitCode == 0) {
+                logger.info("Child process {} completed successfully", processName);
+            } else if (exitCode == 2) {
+                logger.error("Child process {} detected database corruption (exit code: {})", processName, exitCode);
+            } else if (exitCode > 0) {
+                logger.error("Child process {} failed with exit code: {}", processName, exitCode);
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to close agent connection {}", address, e);
+            }
+        }
+    }
+}
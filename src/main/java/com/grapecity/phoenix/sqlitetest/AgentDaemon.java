@@ -0,0 +1,218 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理守护进程 - 在每台测试机器上运行，接受协调者（MainProcess）的TCP连接并在本机启动子进程
+ * 一次只服务一个协调者会话，会话结束后继续等待下一个；协议见{@link AgentProtocol}
+ */
+public class AgentDaemon {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentDaemon.class);
+
+    private final int port;
+    private final String bindAddress;
+
+    public AgentDaemon(int port) {
+        this.port = port;
+        this.bindAddress = TestOptions.getAgentBindAddress();
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : AgentProtocol.DEFAULT_PORT;
+        new AgentDaemon(port).serve();
+    }
+
+    /**
+     * 循环接受协调者连接，直到进程被终止
+     */
+    public void serve() {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress))) {
+            logger.info("Agent listening on {}:{}", bindAddress, serverSocket.getLocalPort());
+            while (!Thread.currentThread().isInterrupted()) {
+                try (Socket socket = serverSocket.accept()) {
+                    logger.info("Coordinator connected from {}", socket.getRemoteSocketAddress());
+                    runSession(socket);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Agent session failed", e);
+                }
+            }
+        } catch (IOException e) {
+            throw new NfsTestException("Agent failed to listen on " + bindAddress + ":" + port, e);
+        }
+    }
+
+    /**
+     * 一个会话：接收参数 -> 启动子进程 -> 全部就绪后回复READY -> 等待START -> 转发输出和退出码
+     */
+    private void runSession(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+
+        List<String> jvmArguments = new ArrayList<>();
+        String runCommand = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(AgentProtocol.OPTION)) {
+                String argument = AgentProtocol.argument(line);
+                if (!AgentProtocol.isAllowedOption(argument)) {
+                    throw new IOException("Rejected option from " + socket.getRemoteSocketAddress()
+                                          + ", only -D" + TestOptions.PREFIX + "*= arguments are accepted: " + argument);
+                }
+                jvmArguments.add(argument);
+            } else if (line.startsWith(AgentProtocol.RUN)) {
+                runCommand = line;
+                break;
+            }
+        }
+        if (runCommand == null) {
+            logger.warn("Coordinator disconnected before sending RUN");
+            return;
+        }
+
+        // RUN <agentName> <processes> <cycles> <time> <databasePath>
+        String[] fields = AgentProtocol.argument(runCommand).split(" ", 5);
+        String agentName = fields[0];
+        int processCount = Integer.parseInt(fields[1]);
+        int maxCycles = Integer.parseInt(fields[2]);
+        int runTimeSeconds = Integer.parseInt(fields[3]);
+        String databasePath = fields[4];
+        logger.info("Agent {} launching {} child processes on {}", agentName, processCount, databasePath);
+
+        File syncFile = File.createTempFile("nfs-agent-sync-", ".tmp");
+        CountDownLatch ready = new CountDownLatch(processCount);
+        List<Process> processes = new ArrayList<>();
+        List<Thread> relays = new ArrayList<>();
+        try {
+            for (int i = 1; i <= processCount; i++) {
+                String processName = agentName + "-ChildProcess-" + i;
+                List<String> command = ChildProcess.buildCommand(jvmArguments, processName, databasePath,
+                                                                  maxCycles, runTimeSeconds, syncFile.getAbsolutePath());
+                ProcessBuilder processBuilder = new ProcessBuilder(command);
+                processBuilder.redirectErrorStream(true);
+                Process process = processBuilder.start();
+                processes.add(process);
+                relays.add(startRelay(processName, process, out, ready));
+            }
+
+            if (!ready.await(AgentProtocol.AGENT_READY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Agent {}: only {} of {} child processes became ready",
+                            agentName, processCount - ready.getCount(), processCount);
+            }
+            send(out, AgentProtocol.READY + " " + (processCount - ready.getCount()));
+
+            // 等待协调者放行，然后通过本机同步文件通知子进程
+            while ((line = in.readLine()) != null && !line.equals(AgentProtocol.START)) {
+                logger.debug("Agent ignoring command before START: {}", line);
+            }
+            if (line == null) {
+                throw new IOException("Coordinator disconnected before START");
+            }
+            try (FileWriter writer = new FileWriter(syncFile)) {
+                writer.write("START:" + System.currentTimeMillis() + ":" + processCount);
+            }
+            logger.info("Agent {} released start barrier", agentName);
+            watchCoordinator(in, agentName, processes);
+
+            for (Thread relay : relays) {
+                relay.join();
+            }
+            send(out, AgentProtocol.DONE);
+            logger.info("Agent {} session completed", agentName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 协调者断开或会话异常时不留下孤儿进程
+            for (Process process : processes) {
+                if (process.isAlive()) {
+                    logger.warn("Agent {} destroying child process {}", agentName, process.pid());
+                    process.destroyForcibly();
+                }
+            }
+            if (!syncFile.delete()) {
+                syncFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 运行期间协调者断开连接（例如被Ctrl+C终止）时立即结束本机子进程
+     */
+    private void watchCoordinator(BufferedReader in, String agentName, List<Process> processes) {
+        Thread watcher = new Thread(() -> {
+            try {
+                while (in.readLine() != null) {
+                    // 开始之后协调者不再发送命令
+                }
+            } catch (IOException e) {
+                logger.debug("Coordinator connection closed", e);
+            }
+            for (Process process : processes) {
+                if (process.isAlive()) {
+                    logger.warn("Coordinator of agent {} disconnected, destroying child process {}",
+                                agentName, process.pid());
+                    process.destroyForcibly();
+                }
+            }
+        }, agentName + "-CoordinatorWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * 把子进程输出逐行转发给协调者，进程结束后发送退出码
+     */
+    private Thread startRelay(String processName, Process process, PrintWriter out, CountDownLatch ready) {
+        Thread relay = new Thread(() -> {
+            boolean signalledReady = false;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!signalledReady && ChildProcess.READY_LINE.equals(line)) {
+                        signalledReady = true;
+                        ready.countDown();
+                    }
+                    send(out, AgentProtocol.OUT + " " + processName + " " + line);
+                }
+                int exitCode = process.waitFor();
+                send(out, AgentProtocol.EXIT + " " + processName + " " + exitCode);
+                logger.info("Child process {} exited with code {}", processName, exitCode);
+            } catch (IOException e) {
+                logger.error("Failed to relay output of {}", processName, e);
+                send(out, AgentProtocol.EXIT + " " + processName + " -1");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!signalledReady) {
+                    ready.countDown();
+                }
+            }
+        }, processName + "-Relay");
+        relay.setDaemon(true);
+        relay.start();
+        return relay;
+    }
+
+    private static void send(PrintWriter out, String line) {
+        synchronized (out) {
+            out.println(line);
+        }
+    }
+}
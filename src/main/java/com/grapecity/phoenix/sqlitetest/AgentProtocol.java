@@ -0,0 +1,57 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.util.regex.Pattern;
+
+/**
+ * 协调者与代理之间的行文本协议（UTF-8，每行一条命令）
+ *
+ * 协调者 -> 代理：
+ *   OPTION -Dnfs.test.&lt;key&gt;=&lt;value&gt;                   传给子进程的测试参数，可以有多行，其他JVM参数会被拒绝
+ *   RUN &lt;代理名&gt; &lt;进程数&gt; &lt;周期数&gt; &lt;秒数&gt; &lt;数据库路径&gt;  启动子进程
+ *   START                                            释放启动屏障
+ * 代理 -> 协调者：
+ *   READY &lt;就绪进程数&gt;                                 所有子进程已连接数据库并在等待启动信号
+ *   OUT &lt;进程名&gt; &lt;输出行&gt;                              子进程的一行输出（包括@METRICS和@SEQUENCE）
+ *   EXIT &lt;进程名&gt; &lt;退出码&gt;                              子进程结束
+ *   DONE                                             本机所有子进程已结束
+ */
+public final class AgentProtocol {
+
+    public static final int DEFAULT_PORT = 7421;
+
+    public static final String OPTION = "OPTION ";
+    public static final String RUN = "RUN ";
+    public static final String START = "START";
+    public static final String READY = "READY";
+    public static final String OUT = "OUT";
+    public static final String EXIT = "EXIT";
+    public static final String DONE = "DONE";
+
+    /**
+     * 代理等待本机子进程就绪的最长时间；协调者从启动子进程开始计算的屏障超时更长一些，
+     * 两者都小于子进程自己等待启动信号的时间，否则先就绪的子进程会在屏障释放前自行开始
+     */
+    public static final long AGENT_READY_TIMEOUT_MILLIS = ChildProcess.START_SIGNAL_TIMEOUT_MILLIS - 10000;
+    public static final long BARRIER_TIMEOUT_MILLIS = ChildProcess.START_SIGNAL_TIMEOUT_MILLIS - 5000;
+
+    private static final Pattern OPTION_ARGUMENT =
+        Pattern.compile("-D" + Pattern.quote(TestOptions.PREFIX) + "[A-Za-z0-9._-]+=.*");
+
+    private AgentProtocol() {
+    }
+
+    /**
+     * 代理只接受-Dnfs.test.*=参数，防止通过OPTION向子进程JVM注入-javaagent、-XX:OnError等参数
+     */
+    public static boolean isAllowedOption(String argument) {
+        return OPTION_ARGUMENT.matcher(argument).matches();
+    }
+
+    /**
+     * 去掉命令字，返回其余部分
+     */
+    public static String argument(String line) {
+        int separator = line.indexOf(' ');
+        return separator < 0 ? "" : line.substring(separator + 1);
+    }
+}
@@ -0,0 +1,227 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 在线备份任务 - 子进程写入期间用SQLite backup API把数据库复制到本地磁盘
+ * 每步复制固定页数，步与步之间休眠，用于找出不会拖慢写入者的限速参数
+ */
+public class BackupTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupTask.class);
+
+    private final String databasePath;
+    private final MetricsCollector metricsCollector;
+    private final JdbcTemplate jdbcTemplate;
+    private Thread worker;
+    /**
+     * 停止标志：进度回调据此停止限速，不依赖线程中断（中断标志会让之后每次休眠立即返回）
+     */
+    private volatile boolean stopping;
+
+    private int backupCount;
+    private final LatencyHistogram backupDurations = new LatencyHistogram();
+    private long totalRestarts;
+    private int snapshotFallbacks;
+
+    public BackupTask(String databasePath, MetricsCollector metricsCollector) {
+        this.databasePath = databasePath;
+        this.metricsCollector = metricsCollector;
+        this.jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
+    }
+
+    public void start() {
+        logger.info("Starting online backup task: {} pages per step, {} ms sleep between steps, " +
+                    "first backup after {} ms, interval {} ms, target dir {}",
+                    TestOptions.getBackupPagesPerStep(), TestOptions.getBackupStepSleepMillis(),
+                    TestOptions.getBackupDelayMillis(), TestOptions.getBackupIntervalMillis(),
+                    TestOptions.getBackupDirectory());
+        worker = new Thread(this::runLoop, "BackupTask");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        stopping = true;
+        // 中断只用于唤醒两次备份之间的等待
+        worker.interrupt();
+        try {
+            // 正在进行的备份步骤在本地代码中执行，给它一点时间结束
+            worker.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Backup summary: backups={}, restarts={}, snapshot fallbacks={}, duration {}",
+                    backupCount, totalRestarts, snapshotFallbacks, backupDurations.describe());
+    }
+
+    private void runLoop() {
+        try {
+            Thread.sleep(TestOptions.getBackupDelayMillis());
+            do {
+                try {
+                    runBackup();
+                } catch (RuntimeException e) {
+                    // 备份失败不终止测试
+                    logger.error("Online backup failed", e);
+                }
+                if (TestOptions.getBackupIntervalMillis() <= 0) {
+                    break;
+                }
+                Thread.sleep(TestOptions.getBackupIntervalMillis());
+            } while (!stopping);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Backup task interrupted");
+        }
+    }
+
+    /**
+     * 执行一次完整备份，记录耗时、步数和因并发写入导致的重新开始次数
+     */
+    private void runBackup() {
+        File directory = new File(TestOptions.getBackupDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new NfsTestException("Cannot create backup directory: " + directory);
+        }
+        File target = new File(directory, "backup-" + System.currentTimeMillis() + ".db");
+        int pagesPerStep = TestOptions.getBackupPagesPerStep();
+        BackupProgress[] progressHolder = new BackupProgress[1];
+
+        MetricsCollector.ActivityWindow window = metricsCollector.beginActivity("backup");
+        long start = System.nanoTime();
+        int result;
+        try {
+            result = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                DB db = connection.unwrap(SQLiteConnection.class).getDatabase();
+                BackupProgress progress = new BackupProgress(connection);
+                progressHolder[0] = progress;
+                try {
+                    // 步与步之间的限速在进度回调里完成；sleepTimeMillis/nTimeouts只用于源库忙时的重试
+                    return db.backup("main", target.getAbsolutePath(), progress,
+                                     TestOptions.getBackupBusySleepMillis(), TestOptions.getBackupBusyRetries(),
+                                     pagesPerStep);
+                } finally {
+                    progress.releaseSnapshot();
+                }
+            });
+        } finally {
+            metricsCollector.endActivity(window);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        BackupProgress progress = progressHolder[0];
+
+        backupCount++;
+        totalRestarts += progress.restarts;
+        if (progress.snapshotHeld) {
+            snapshotFallbacks++;
+        }
+        backupDurations.recordNanos(elapsedNanos);
+
+        if (result != 0) {
+            logger.error("Online backup to {} ended with SQLite result code {} after {} ms",
+                         target, result, elapsedNanos / 1_000_000);
+            return;
+        }
+        logger.info("Online backup {} completed: {} pages, {} steps, {} restarts, {} ms, {} bytes -> {}",
+                    backupCount, progress.pageCount, progress.steps, progress.restarts,
+                    elapsedNanos / 1_000_000, target.length(), target);
+
+        if (TestOptions.isBackupVerifyEnabled()) {
+            String check = DatabaseConfig.createJdbcTemplate(target.getAbsolutePath())
+                .queryForObject("PRAGMA quick_check", String.class);
+            if ("ok".equalsIgnoreCase(check)) {
+                logger.info("Backup quick_check: PASSED");
+            } else {
+                logger.error("Backup quick_check FAILED: {}", check);
+            }
+        }
+    }
+
+    /**
+     * 备份进度回调：统计步数，剩余页数回升说明源库被其他连接修改、备份从头开始
+     *
+     * 持续写入时每步之间都可能被修改，备份永远不会完成；backup API在本地代码中循环，回调无法中止它或改变每步页数，
+     * 所以重新开始超过上限（或任务正在停止）时在源连接上开启一个读事务：之后的步骤都读同一个快照，
+     * 与pagesPerStep=-1一步复制完全库相同，不会再重新开始；WAL模式下写入者不受影响
+     */
+    private class BackupProgress implements DB.ProgressObserver {
+        private final Connection connection;
+        private final int maxRestarts = TestOptions.getBackupMaxRestarts();
+        private final long stepSleepMillis = TestOptions.getBackupStepSleepMillis();
+        private int lastRemaining = -1;
+        private int pageCount;
+        private int steps;
+        private int restarts;
+        private boolean snapshotHeld;
+
+        BackupProgress(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            steps++;
+            if (lastRemaining >= 0 && remaining > lastRemaining) {
+                restarts++;
+            }
+            lastRemaining = remaining;
+            this.pageCount = pageCount;
+            if (remaining == 0) {
+                return;
+            }
+
+            if (!snapshotHeld && restarts >= maxRestarts) {
+                logger.warn("Online backup restarted {} times under write load, copying the remaining {} of {} pages "
+                            + "from a single read snapshot (as a one-step backup would)", restarts, remaining, pageCount);
+                holdSnapshot();
+            } else if (!snapshotHeld && stopping) {
+                logger.info("Backup task is stopping, copying the remaining {} of {} pages from a single read snapshot "
+                            + "without throttling", remaining, pageCount);
+                holdSnapshot();
+            }
+
+            if (stepSleepMillis > 0 && !stopping) {
+                try {
+                    Thread.sleep(stepSleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void holdSnapshot() {
+            try {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                    resultSet.next();
+                }
+                snapshotHeld = true;
+            } catch (SQLException e) {
+                logger.warn("Failed to open a read transaction for the online backup", e);
+            }
+        }
+
+        void releaseSnapshot() throws SQLException {
+            if (snapshotHeld) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
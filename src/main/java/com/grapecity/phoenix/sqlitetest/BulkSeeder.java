@@ -0,0 +1,276 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量装载器 - 快速生成千万级别的初始数据
+ * 生产者线程生成数据行，单个写入线程用大事务+多行INSERT写入
+ */
+public class BulkSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkSeeder.class);
+    private static final int COLUMN_COUNT = 4;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final List<Object[]> END_OF_DATA = new ArrayList<>();
+
+    private final String databasePath;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final int transactionRows;
+    private final int rowsPerStatement;
+    private final String indexMode;
+
+    public BulkSeeder(String databasePath, JdbcTemplate jdbcTemplate, UserRepository userRepository) {
+        this.databasePath = databasePath;
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.transactionRows = Math.max(1, TestOptions.getSeedTransactionRows());
+        // SQLite单条语句最多32766个绑定参数
+        this.rowsPerStatement = Math.max(1, Math.min(TestOptions.getSeedRowsPerStatement(), 32766 / COLUMN_COUNT));
+        this.indexMode = TestOptions.getSeedIndexMode();
+    }
+
+    /**
+     * 准备初始数据库：能克隆种子文件则克隆，否则生成并按需保存为种子文件
+     */
+    public void seed(long rowCount) {
+        String cloneFile = TestOptions.getSeedCloneFile();
+        if (cloneFile != null && new File(cloneFile).isFile() && cloneMatches(cloneFile, rowCount)) {
+            cloneSeedFile(cloneFile);
+            return;
+        }
+
+        userRepository.createUsersTable();
+        if ("eager".equalsIgnoreCase(indexMode)) {
+            userRepository.createUsersIndexes();
+        }
+
+        long start = System.currentTimeMillis();
+        long inserted = load(rowCount);
+        long elapsedMs = Math.max(1, System.currentTimeMillis() - start);
+        logger.info("Bulk seeded {} users in {} ms ({} rows/second)",
+                    inserted, elapsedMs, inserted * 1000 / elapsedMs);
+
+        if ("deferred".equalsIgnoreCase(indexMode)) {
+            long indexStart = System.currentTimeMillis();
+            userRepository.createUsersIndexes();
+            logger.info("Deferred index creation took {} ms", System.currentTimeMillis() - indexStart);
+        }
+
+        // 把WAL内容合并进主文件，保证种子文件可以单独复制
+        jdbcTemplate.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+
+        if (cloneFile != null) {
+            saveSeedFile(cloneFile, rowCount);
+        }
+    }
+
+    /**
+     * 生产者线程生成数据，当前线程作为唯一写入者消费
+     */
+    private long load(long rowCount) {
+        BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread producer = new Thread(() -> produceRows(rowCount, queue), "BulkSeeder-Producer");
+        producer.setDaemon(true);
+        producer.start();
+
+        try {
+            Long inserted = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> writeRows(connection, queue));
+            return inserted != null ? inserted : 0;
+        } catch (Exception e) {
+            producer.interrupt();
+            logger.error("Bulk seeding failed", e);
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected during bulk seeding", e);
+            }
+            throw new NfsTestException("Bulk seeding failed", e);
+        }
+    }
+
+    private void produceRows(long rowCount, BlockingQueue<List<Object[]>> queue) {
+        Random random = WorkloadSeed.forProcess("seed");
+        try {
+            List<Object[]> chunk = new ArrayList<>(rowsPerStatement);
+            for (long i = 1; i <= rowCount; i++) {
+                chunk.add(new Object[]{
+                    "User" + i,
+                    "user" + i + "@test.com",
+                    20 + random.nextInt(50),
+                    "SeedData-" + Long.toHexString(random.nextLong())
+                });
+                if (chunk.size() == rowsPerStatement) {
+                    queue.put(chunk);
+                    chunk = new ArrayList<>(rowsPerStatement);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                queue.put(chunk);
+            }
+            queue.put(END_OF_DATA);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Bulk seed producer was interrupted");
+        }
+    }
+
+    private long writeRows(Connection connection, BlockingQueue<List<Object[]>> queue) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try (Statement pragma = connection.createStatement()) {
+            pragma.execute("PRAGMA synchronous = OFF");
+        }
+        connection.setAutoCommit(false);
+        long inserted = 0;
+        long uncommitted = 0;
+        long lastReport = System.currentTimeMillis();
+
+        try (PreparedStatement fullInsert = connection.prepareStatement(buildInsertSql(rowsPerStatement))) {
+            while (true) {
+                List<Object[]> chunk = queue.poll(60, TimeUnit.SECONDS);
+                if (chunk == null) {
+                    throw new SQLException("Bulk seed producer stalled for 60 seconds");
+                }
+                if (chunk == END_OF_DATA) {
+                    break;
+                }
+
+                if (chunk.size() == rowsPerStatement) {
+                    bindRows(fullInsert, chunk);
+                    fullInsert.executeUpdate();
+                } else {
+                    try (PreparedStatement tailInsert = connection.prepareStatement(buildInsertSql(chunk.size()))) {
+                        bindRows(tailInsert, chunk);
+                        tailInsert.executeUpdate();
+                    }
+                }
+
+                inserted += chunk.size();
+                uncommitted += chunk.size();
+                if (uncommitted >= transactionRows) {
+                    connection.commit();
+                    uncommitted = 0;
+                }
+
+                if (System.currentTimeMillis() - lastReport >= 10000) {
+                    logger.info("Bulk seeding progress: {} rows", inserted);
+                    lastReport = System.currentTimeMillis();
+                }
+            }
+            connection.commit();
+            return inserted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            connection.rollback();
+            throw new SQLException("Bulk seed writer was interrupted", e);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String buildInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO users (name, email, age, data) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    private static void bindRows(PreparedStatement statement, List<Object[]> chunk) throws SQLException {
+        int index = 1;
+        for (Object[] row : chunk) {
+            for (Object value : row) {
+                statement.setObject(index++, value);
+            }
+        }
+    }
+
+    /**
+     * 用预制的种子文件替换数据库文件
+     */
+    private void cloneSeedFile(String cloneFile) {
+        logger.info("Cloning seed database {} -> {}", cloneFile, databasePath);
+        long start = System.currentTimeMillis();
+        try {
+            // 残留的-wal/-shm文件会与新文件不匹配，必须一起删除
+            deleteSidecarFiles(databasePath);
+            Files.copy(new File(cloneFile).toPath(), new File(databasePath).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new NfsTestException("Failed to clone seed database from " + cloneFile, e);
+        }
+        logger.info("Cloned {} bytes in {} ms", new File(databasePath).length(), System.currentTimeMillis() - start);
+
+        // 重新应用PRAGMA设置，表已存在时CREATE TABLE IF NOT EXISTS不会改动数据
+        userRepository.createUsersTable();
+    }
+
+    /**
+     * 种子文件的行数和索引模式记录在旁边的.properties文件中，与本次设置不一致（或没有记录）时重新生成
+     */
+    private boolean cloneMatches(String cloneFile, long rowCount) {
+        Properties recorded = new Properties();
+        try (InputStream in = new FileInputStream(cloneFile + ".properties")) {
+            recorded.load(in);
+        } catch (IOException e) {
+            logger.warn("Seed database {} has no readable {}.properties, regenerating it", cloneFile, cloneFile);
+            return false;
+        }
+        String rows = recorded.getProperty("rows");
+        String mode = recorded.getProperty("index.mode");
+        if (!String.valueOf(rowCount).equals(rows) || !indexMode.equalsIgnoreCase(String.valueOf(mode))) {
+            logger.warn("Seed database {} was built with rows={}, index.mode={}; regenerating for rows={}, index.mode={}",
+                        cloneFile, rows, mode, rowCount, indexMode);
+            return false;
+        }
+        return true;
+    }
+
+    private void saveSeedFile(String cloneFile, long rowCount) {
+        try {
+            File target = new File(cloneFile);
+            if (target.getParentFile() != null) {
+                Files.createDirectories(target.getParentFile().toPath());
+            }
+            Files.copy(new File(databasePath).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Properties recorded = new Properties();
+            recorded.setProperty("rows", String.valueOf(rowCount));
+            recorded.setProperty("index.mode", indexMode);
+            try (OutputStream out = new FileOutputStream(cloneFile + ".properties")) {
+                recorded.store(out, "sqlite-nfs-test seed database");
+            }
+            logger.info("Saved seed database to {} for later runs", cloneFile);
+        } catch (IOException e) {
+            logger.warn("Failed to save seed database to {}", cloneFile, e);
+        }
+    }
+
+    static void deleteSidecarFiles(String databasePath) throws IOException {
+        Files.deleteIfExists(new File(databasePath + "-wal").toPath());
+        Files.deleteIfExists(new File(databasePath + "-shm").toPath());
+    }
+}
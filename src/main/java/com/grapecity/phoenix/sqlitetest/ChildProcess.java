@@ -4,7 +4,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.io.File;
 
 /**
@@ -14,7 +19,18 @@ import java.io.File;
 public class ChildProcess {
     
     private static final Logger logger = LoggerFactory.getLogger(ChildProcess.class);
-    private final Random random = new Random();
+    
+    /**
+     * 子进程连接数据库后、等待启动信号前输出的就绪标记
+     */
+    public static final String READY_LINE = "@READY";
+    
+    /**
+     * 输出就绪标记后等待启动信号的最长时间，超时后自行开始
+     */
+    public static final long START_SIGNAL_TIMEOUT_MILLIS = 30000;
+    private Random random = new Random();
+    private OrderRepository orderRepository;
     
     public static void main(String[] args) {
         if (args.length < 2) {
@@ -24,6 +40,7 @@ public class ChildProcess {
         
         String processName = args[0];
         String databasePath = args[1];
+        LogSetup.configure(processName, true);
         int maxCycles = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
         int runTimeSeconds = args.length > 3 ? Integer.parseInt(args[3]) : -1;
         String syncFilePath = args.length > 4 ? args[4] : null;
@@ -32,6 +49,25 @@ public class ChildProcess {
         childProcess.runProcess(processName, databasePath, maxCycles, runTimeSeconds, syncFilePath);
     }
     
+    /**
+     * 构建启动子进程的命令行（主进程和代理守护进程共用）
+     */
+    public static List<String> buildCommand(List<String> jvmArguments, String processName, String databasePath,
+                                            int maxCycles, int runTimeSeconds, String syncFilePath) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ChildProcess.class.getName());
+        command.add(processName);
+        command.add(databasePath);
+        command.add(String.valueOf(maxCycles));
+        command.add(String.valueOf(runTimeSeconds)); // 总是添加runTimeSeconds参数
+        command.add(syncFilePath); // 添加同步文件路径
+        return command;
+    }
+    
     public void runProcess(String processName, String databasePath, int maxCycles, int runTimeSeconds, String syncFilePath) {
         if (runTimeSeconds > 0) {
             logger.info("Child process {} starting with database: {}, run time: {} seconds", 
@@ -44,10 +80,53 @@ public class ChildProcess {
                        processName, databasePath, maxCycles);
         }
         
+        JfrEvents.setProcessName(processName);
+        if (TestOptions.isJfrEnabled()) {
+            JfrEvents.registerEventTypes();
+        }
+        WriterMetrics writerMetrics = new WriterMetrics(processName);
+        WriteSequence writeSequence = new WriteSequence(processName);
+        OpTrace.Writer opTrace = null;
+        ContentionTracer contentionTracer = TestOptions.isContentionTracingEnabled()
+            ? new ContentionTracer(processName) : null;
+        
         try {
             // 创建数据库连接
-            JdbcTemplate jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
+            DataSource dataSource = DatabaseConfig.createDataSource(databasePath);
+            if (contentionTracer != null) {
+                // 每个连接都注册忙处理器和提交/更新监听器
+                dataSource = contentionTracer.wrap(dataSource);
+            }
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
             UserRepository userRepository = new UserRepository(jdbcTemplate);
+            userRepository.setWriterMetrics(writerMetrics);
+            userRepository.setContentionTracer(contentionTracer);
+            userRepository.setWriteSequence(writeSequence);
+            // 按工作负载种子派生本进程的随机序列，同一种子下查询条件和插入数据都相同；
+            // 休眠抖动用不带种子的随机数，退避次数取决于锁竞争，不能消耗工作负载序列
+            random = WorkloadSeed.forProcess(processName);
+            userRepository.setRandom(random);
+            if (TestOptions.isTraceEnabled()) {
+                long seed = WorkloadSeed.resolve();
+                File traceDirectory = new File(TestOptions.getTraceDirectory(), "seed-" + Long.toHexString(seed));
+                opTrace = new OpTrace.Writer(new File(traceDirectory, processName + OpTrace.FILE_SUFFIX),
+                                             processName, seed);
+                userRepository.setOpTrace(opTrace);
+            }
+            WriterPacing writerPacing = null;
+            if (TestOptions.isAdaptiveEnabled()) {
+                // 自适应模式：启动时处于暂停状态，等待主进程下发写入节奏
+                writerPacing = new WriterPacing(false, 0);
+                writerPacing.listen(System.in, processName);
+                userRepository.setWriterPacing(writerPacing);
+            }
+            if (TestOptions.isExtendedSchema()) {
+                orderRepository = new OrderRepository(jdbcTemplate);
+                orderRepository.setRandom(random);
+                orderRepository.setWriterMetrics(writerMetrics);
+                orderRepository.setWriterPacing(writerPacing);
+                orderRepository.setContentionTracer(contentionTracer);
+            }
             
             // 检查数据库连接
             if (!userRepository.isConnectionHealthy()) {
@@ -61,6 +140,12 @@ public class ChildProcess {
                 waitForStartSignal(processName, syncFilePath);
             }
             
+            // 开始向主进程上报写入指标
+            writerMetrics.startReporter(TestOptions.getMetricsIntervalMillis(), System.out);
+            if (contentionTracer != null) {
+                contentionTracer.markStart();
+            }
+            
             // 执行工作循环
             int cycleCount = 0;
             long startTime = System.currentTimeMillis();
@@ -71,8 +156,18 @@ public class ChildProcess {
                 
                 try {
                     performWorkCycle(userRepository, processName, cycleCount);
+                    if (opTrace != null) {
+                        opTrace.cycleEnd(cycleCount);
+                    }
+                    // 每个周期结束后上报已确认的最大序号
+                    writeSequence.report(System.out);
                 } catch (Exception e) {
                     logger.error("Process {} failed in cycle {}", processName, cycleCount, e);
+                    writerMetrics.stopReporter(System.out);
+                    writeSequence.report(System.out);
+                    if (contentionTracer != null) {
+                        contentionTracer.report(System.out);
+                    }
                     
                     // 检查是否为数据库损坏
                     if (NfsTestException.isDatabaseCorruption(e)) {
@@ -88,11 +183,21 @@ public class ChildProcess {
                 // 如果还有下一个循环且未超时，等待一定时间
                 if ((cycleCount < maxCycles || maxCycles == Integer.MAX_VALUE) && 
                     System.currentTimeMillis() < endTime) {
-                    logger.debug("Process {} completed cycle {}, waiting before next cycle", processName, cycleCount);
-                    Thread.sleep(50 + new Random().nextInt(50)); // 减少等待时间到50-100ms，大幅增加并发压力
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Process {} completed cycle {}, waiting before next cycle", processName, cycleCount);
+                    }
+                    Thread.sleep(50 + ThreadLocalRandom.current().nextInt(50)); // 减少等待时间到50-100ms，大幅增加并发压力
                 }
             }
             
+            writerMetrics.stopReporter(System.out);
+            writeSequence.report(System.out);
+            if (contentionTracer != null) {
+                contentionTracer.report(System.out);
+            }
+            if (opTrace != null) {
+                opTrace.close();
+            }
             logger.info("Process {} completed all {} cycles successfully", processName, cycleCount);
             
         } catch (Exception e) {
@@ -109,19 +214,45 @@ public class ChildProcess {
     private void performWorkCycle(UserRepository userRepository, String processName, int cycleCount) 
             throws InterruptedException {
         
-        logger.debug("Process {} starting work cycle {}", processName, cycleCount);
-        
+        if (logger.isDebugEnabled()) {
+            logger.debug("Process {} starting work cycle {}", processName, cycleCount);
+        }
+        JfrEvents.CycleEvent cycleEvent = new JfrEvents.CycleEvent();
+        cycleEvent.begin();
+        cycleEvent.cycle = cycleCount;
+        try {
+            runWorkCycle(userRepository, processName, cycleCount, cycleEvent);
+            cycleEvent.success = true;
+        } finally {
+            cycleEvent.commit();
+        }
+    }
+    
+    private void runWorkCycle(UserRepository userRepository, String processName, int cycleCount,
+                              JfrEvents.CycleEvent cycleEvent) throws InterruptedException {
         // 1. 随机条件查询users表
-        logger.debug("Process {} performing random query", processName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Process {} performing random query", processName);
+        }
         userRepository.queryRandomUsers(processName);
         
         // 2. 循环插入数据5秒钟
-        logger.debug("Process {} starting batch insert", processName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Process {} starting batch insert", processName);
+        }
         int insertedCount = userRepository.batchInsertUsers(processName, cycleCount);
+        cycleEvent.inserted = insertedCount;
         
         // 3. 事务会自动提交（JdbcTemplate默认自动提交）
-        logger.debug("Process {} completed cycle {}, inserted {} records", 
-                     processName, cycleCount, insertedCount);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Process {} completed cycle {}, inserted {} records", 
+                         processName, cycleCount, insertedCount);
+        }
+        
+        // 扩展schema：跨表事务的订单工作负载
+        if (orderRepository != null) {
+            orderRepository.runOrderWorkload(processName, TestOptions.getOrderPhaseMillis());
+        }
         
         // 4. 验证数据库状态
         if (!userRepository.isConnectionHealthy()) {
@@ -139,12 +270,14 @@ public class ChildProcess {
     /**
      * 等待主进程的同步启动信号
      */
-    private void waitForStartSignal(String processName, String syncFilePath) {
+    static void waitForStartSignal(String processName, String syncFilePath) {
         try {
             logger.info("Process {} waiting for synchronization signal...", processName);
+            System.out.println(READY_LINE);
+            System.out.flush();
             
             File syncFile = new File(syncFilePath);
-            long timeout = System.currentTimeMillis() + 30000; // 30秒超时
+            long timeout = System.currentTimeMillis() + START_SIGNAL_TIMEOUT_MILLIS;
             
             while (System.currentTimeMillis() < timeout) {
                 if (syncFile.exists() && syncFile.length() > 0) {
@@ -0,0 +1,229 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 自适应并发控制器 - 用AIMD调整目标总吞吐，再换算成活动写入者数量和每个写入者的插入间隔
+ * 每个控制周期根据子进程上报的忙错误率和p99写入延迟决定加性增加还是乘性减小，
+ * 记录满足SLO的周期中最高的实际吞吐作为"最大安全写入速率"
+ */
+public class ConcurrencyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyController.class);
+
+    private final MetricsCollector metricsCollector;
+    private final int maxWriters;
+    private final long intervalMillis;
+    private final long sloP99Micros;
+    private final double maxBusyRate;
+    private final double rateStep;
+    private final double decreaseFactor;
+    private final double writerMaxRate;
+    private final Map<String, PrintStream> writers = new TreeMap<>();
+    private Thread worker;
+
+    private double targetRate;
+    private int activeWriters;
+    private long delayMicros;
+    private long lastChangeMillis;
+    private int steps;
+    private int violations;
+    private Step bestStep;
+    private final List<Step> trajectory = new ArrayList<>();
+
+    public ConcurrencyController(MetricsCollector metricsCollector, int maxWriters) {
+        this.metricsCollector = metricsCollector;
+        this.maxWriters = Math.max(1, maxWriters);
+        this.intervalMillis = TestOptions.getAdaptiveIntervalMillis();
+        this.sloP99Micros = TestOptions.getAdaptiveSloP99Millis() * 1000;
+        this.maxBusyRate = TestOptions.getAdaptiveMaxBusyRate();
+        this.rateStep = TestOptions.getAdaptiveRateStep();
+        this.decreaseFactor = TestOptions.getAdaptiveDecreaseFactor();
+        this.writerMaxRate = TestOptions.getAdaptiveWriterMaxRate();
+        applyTarget(TestOptions.getAdaptiveInitialRate());
+    }
+
+    /**
+     * 登记子进程的标准输入，立即下发当前的写入节奏
+     */
+    public synchronized void register(String processName, OutputStream childInput) {
+        PrintStream out = new PrintStream(childInput, true, StandardCharsets.UTF_8);
+        writers.put(processName, out);
+        sendPacing();
+    }
+
+    public synchronized void unregister(String processName) {
+        writers.remove(processName);
+    }
+
+    public void start() {
+        logger.info("Starting adaptive concurrency controller: up to {} writers, p99 SLO {} ms, max busy rate {}%, " +
+                    "initial rate {} writes/s, step +{}, decrease x{}, control interval {} ms",
+                    maxWriters, sloP99Micros / 1000, String.format("%.2f", maxBusyRate * 100),
+                    String.format("%.0f", targetRate), String.format("%.0f", rateStep), decreaseFactor, intervalMillis);
+        if (TestOptions.getMetricsIntervalMillis() <= 0 || TestOptions.getMetricsIntervalMillis() * 2 > intervalMillis) {
+            logger.warn("Metrics interval {} ms is too coarse for a {} ms control interval",
+                        TestOptions.getMetricsIntervalMillis(), intervalMillis);
+        }
+        worker = new Thread(this::runLoop, "ConcurrencyController");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logSummary();
+    }
+
+    private void runLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(intervalMillis);
+                try {
+                    controlStep();
+                } catch (RuntimeException e) {
+                    logger.error("Adaptive control step failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Concurrency controller interrupted");
+        }
+    }
+
+    /**
+     * 一个控制周期：汇总上次调整之后完整落在新设置下的区间，再做AIMD调整
+     */
+    private synchronized void controlStep() {
+        long operations = 0;
+        long busyErrors = 0;
+        long worstP99 = 0;
+        long from = Long.MAX_VALUE;
+        long to = 0;
+        for (MetricsSnapshot snapshot : metricsCollector.getSnapshotsSince(lastChangeMillis)) {
+            if (snapshot.getStartMillis() < lastChangeMillis) {
+                continue;
+            }
+            operations += snapshot.getOperations();
+            busyErrors += snapshot.getBusyErrors();
+            worstP99 = Math.max(worstP99, snapshot.getP99Micros());
+            from = Math.min(from, snapshot.getStartMillis());
+            to = Math.max(to, snapshot.getEndMillis());
+        }
+        if (operations == 0 || to <= from) {
+            logger.debug("Adaptive control: no complete metrics intervals since last change, waiting");
+            return;
+        }
+
+        double observedRate = operations * 1000.0 / (to - from);
+        double busyRate = (double) busyErrors / (operations + busyErrors);
+        boolean violated = worstP99 > sloP99Micros || busyRate > maxBusyRate;
+        steps++;
+
+        Step step = new Step(steps, activeWriters, delayMicros, targetRate, observedRate, worstP99, busyRate, violated);
+        trajectory.add(step);
+        if (!violated && (bestStep == null || observedRate > bestStep.observedRate)) {
+            bestStep = step;
+        }
+
+        double nextTarget;
+        if (violated) {
+            violations++;
+            nextTarget = Math.max(1, Math.min(targetRate, observedRate) * decreaseFactor);
+        } else {
+            // 目标远高于实际吞吐时说明已经饱和，不再继续抬高目标
+            nextTarget = Math.min(targetRate + rateStep, observedRate + rateStep * 2);
+        }
+        String previous = describeSetting();
+        applyTarget(nextTarget);
+
+        logger.info("Adaptive step {}: {} -> observed {} writes/s, p99 {} us, busy rate {}% {} -> {}",
+                    steps, previous, String.format("%.1f", observedRate), worstP99,
+                    String.format("%.2f", busyRate * 100), violated ? "SLO VIOLATED, decrease" : "within SLO, increase",
+                    describeSetting());
+    }
+
+    /**
+     * 把目标总吞吐换算成写入者数量和插入间隔：单个写入者速率上限以内只用一个写入者，超出后逐个增加
+     */
+    private void applyTarget(double rate) {
+        targetRate = Math.min(rate, maxWriters * writerMaxRate);
+        activeWriters = (int) Math.max(1, Math.min(maxWriters, Math.ceil(targetRate / writerMaxRate)));
+        delayMicros = Math.round(1_000_000.0 * activeWriters / targetRate);
+        lastChangeMillis = System.currentTimeMillis();
+        sendPacing();
+    }
+
+    private synchronized void sendPacing() {
+        int index = 0;
+        for (PrintStream out : writers.values()) {
+            out.println(WriterPacing.toLine(index < activeWriters, delayMicros));
+            index++;
+        }
+    }
+
+    private String describeSetting() {
+        return String.format("target %.0f writes/s (%d writers, %d us delay)", targetRate, activeWriters, delayMicros);
+    }
+
+    private synchronized void logSummary() {
+        logger.info("=== Adaptive Concurrency ===");
+        logger.info("Control steps: {}, SLO violations: {}", steps, violations);
+        for (Step step : trajectory) {
+            logger.info("  step {}: writers={}, delay={}us, target={}, observed={} writes/s, p99={}us, busy={}%{}",
+                        step.index, step.writers, step.delayMicros, String.format("%.0f", step.targetRate),
+                        String.format("%.1f", step.observedRate), step.p99Micros,
+                        String.format("%.2f", step.busyRate * 100), step.violated ? " (violated)" : "");
+        }
+        if (bestStep == null) {
+            logger.warn("Max safe writes/s: not determined (no control step stayed within the SLO)");
+        } else {
+            logger.info("Max safe writes/s: {} (writers={}, delay={}us, p99={}us, busy rate={}%)",
+                        String.format("%.1f", bestStep.observedRate), bestStep.writers, bestStep.delayMicros,
+                        bestStep.p99Micros, String.format("%.2f", bestStep.busyRate * 100));
+        }
+    }
+
+    /**
+     * 控制轨迹中的一个点
+     */
+    private static class Step {
+        private final int index;
+        private final int writers;
+        private final long delayMicros;
+        private final double targetRate;
+        private final double observedRate;
+        private final long p99Micros;
+        private final double busyRate;
+        private final boolean violated;
+
+        Step(int index, int writers, long delayMicros, double targetRate, double observedRate,
+             long p99Micros, double busyRate, boolean violated) {
+            this.index = index;
+            this.writers = writers;
+            this.delayMicros = delayMicros;
+            this.targetRate = targetRate;
+            this.observedRate = observedRate;
+            this.p99Micros = p99Micros;
+            this.busyRate = busyRate;
+            this.violated = violated;
+        }
+    }
+}
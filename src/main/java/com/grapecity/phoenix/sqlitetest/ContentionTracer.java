@@ -0,0 +1,461 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.sqlite.BusyHandler;
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import javax.sql.DataSource;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁竞争追踪 - 在子进程的每个数据库连接上注册自定义BusyHandler和提交/更新监听器，按操作类型统计：
+ * 忙处理器调用次数、锁等待时间及其分布、取得连接到提交的事务时间、提交之后到语句返回的时间（WAL写入和自动检查点）
+ *
+ * BusyHandler会替换连接的busy_timeout，这里按SQLite内置的退避序列等待，总时长不超过连接的busy_timeout，
+ * 行为与不追踪时一致；不调用忙处理器就直接返回的忙错误（WAL快照过期等）单独计数
+ * 回调都在执行语句的线程上同步调用，当前操作记在线程变量中；结束时每种操作输出一行给主进程，
+ * 格式：@CONTENTION process=name op=insert key=value ...
+ */
+public class ContentionTracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentionTracer.class);
+
+    public static final String LINE_PREFIX = "@CONTENTION ";
+
+    /**
+     * SQLite默认忙处理器（sqliteDefaultBusyCallback）的等待序列，单位毫秒
+     */
+    private static final int[] DELAYS = {1, 2, 5, 10, 15, 20, 25, 25, 25, 50, 50, 100};
+    private static final int[] TOTALS = {0, 1, 3, 8, 18, 33, 53, 78, 103, 128, 178, 228};
+
+    /**
+     * 等待时间分布的上界（微秒）：&lt;1ms、&lt;10ms、&lt;100ms、&lt;1s、其余
+     */
+    private static final long[] WAIT_BOUNDS_MICROS = {1_000, 10_000, 100_000, 1_000_000};
+
+    /**
+     * 没有调用begin时触发的回调记在此操作名下（连接检查、完整性检查等）
+     */
+    private static final String UNLABELED = "other";
+
+    private final String processName;
+    private final Map<String, OperationStats> operations = new TreeMap<>();
+    private final ThreadLocal<Current> current = new ThreadLocal<>();
+    private final CommitListener commitListener = new CommitListener();
+    private final UpdateListener updateListener = new UpdateListener();
+    private long startMillis = System.currentTimeMillis();
+
+    public ContentionTracer(String processName) {
+        this.processName = processName;
+    }
+
+    /**
+     * 包装数据源：每个取出的连接都注册忙处理器和提交/更新监听器
+     */
+    public DataSource wrap(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return install(super.getConnection());
+            }
+        };
+    }
+
+    private Connection install(Connection connection) throws SQLException {
+        SQLiteConnection sqlite = connection.unwrap(SQLiteConnection.class);
+        BusyHandler.setHandler(sqlite, new TracingBusyHandler(sqlite.getBusyTimeout()));
+        sqlite.addCommitListener(commitListener);
+        sqlite.addUpdateListener(updateListener);
+        // 事务时间从取得连接开始计算，不包括打开连接；一个操作取得多个连接时以最后一个为准
+        Current op = current.get();
+        if (op != null) {
+            op.startNanos = System.nanoTime();
+        }
+        return connection;
+    }
+
+    /**
+     * 从此刻开始计算每秒等待次数（子进程收到启动信号后调用）
+     */
+    public void markStart() {
+        startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 当前线程开始一个操作，之后的回调都记在该操作名下，直到调用end
+     */
+    public void begin(String operation) {
+        current.set(new Current(operation));
+    }
+
+    /**
+     * 结束当前操作
+     *
+     * @param error 操作失败时的异常，成功时为null
+     */
+    public void end(Throwable error) {
+        Current op = current.get();
+        current.remove();
+        if (op == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            OperationStats stats = statsFor(op.operation);
+            stats.operations++;
+            stats.invocations += op.invocations;
+            stats.rows += op.rows;
+            if (op.invocations > 0) {
+                stats.recordWait(op.waitNanos);
+            }
+            if (op.gaveUp) {
+                stats.gaveUp++;
+            } else if (error != null && op.invocations == 0 && NfsTestException.isBusy(error)) {
+                stats.immediateBusy++;
+            }
+            if (op.commitNanos > 0) {
+                stats.commit.recordNanos(now - op.commitNanos);
+            }
+        }
+    }
+
+    /**
+     * 每种操作输出一行给主进程
+     */
+    public void report(PrintStream out) {
+        for (OperationProfile profile : snapshot()) {
+            out.println(profile.toLine());
+        }
+        out.flush();
+    }
+
+    public synchronized List<OperationProfile> snapshot() {
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - startMillis);
+        List<OperationProfile> profiles = new ArrayList<>();
+        operations.forEach((operation, stats) -> profiles.add(stats.toProfile(processName, operation, elapsedMillis)));
+        return profiles;
+    }
+
+    private OperationStats statsFor(String operation) {
+        return operations.computeIfAbsent(operation, key -> new OperationStats());
+    }
+
+    /**
+     * 按SQLite默认忙处理器的序列等待，记录等待时间；超过busy_timeout时返回0，语句以SQLITE_BUSY失败
+     */
+    private class TracingBusyHandler extends BusyHandler {
+
+        private final int timeoutMillis;
+
+        TracingBusyHandler(int timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        protected int callback(int previousInvocations) {
+            int delay;
+            int prior;
+            if (previousInvocations < DELAYS.length) {
+                delay = DELAYS[previousInvocations];
+                prior = TOTALS[previousInvocations];
+            } else {
+                delay = DELAYS[DELAYS.length - 1];
+                prior = TOTALS[TOTALS.length - 1] + delay * (previousInvocations - (DELAYS.length - 1));
+            }
+            if (prior + delay > timeoutMillis) {
+                delay = timeoutMillis - prior;
+            }
+            Current op = current.get();
+            if (delay <= 0) {
+                if (op != null) {
+                    op.gaveUp = true;
+                } else {
+                    recordUnlabeled(0, true);
+                }
+                return 0;
+            }
+            long start = System.nanoTime();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+            long waited = System.nanoTime() - start;
+            if (op != null) {
+                op.invocations++;
+                op.waitNanos += waited;
+            } else {
+                recordUnlabeled(waited, false);
+            }
+            return 1;
+        }
+    }
+
+    private synchronized void recordUnlabeled(long waitNanos, boolean gaveUp) {
+        OperationStats stats = statsFor(UNLABELED);
+        if (gaveUp) {
+            stats.gaveUp++;
+        } else {
+            stats.invocations++;
+            stats.recordWait(waitNanos);
+        }
+    }
+
+    /**
+     * 提交钩子在事务真正写入WAL之前调用：取得连接到此刻是事务时间，此刻到语句返回是WAL写入和自动检查点
+     * 只统计修改过行的事务（只读语句结束时也可能触发提交钩子）
+     */
+    private class CommitListener implements SQLiteCommitListener {
+
+        @Override
+        public void onCommit() {
+            Current op = current.get();
+            if (op == null || op.rows == 0) {
+                return;
+            }
+            op.commitNanos = System.nanoTime();
+            synchronized (ContentionTracer.this) {
+                statsFor(op.operation).transaction.recordNanos(op.commitNanos - op.startNanos);
+            }
+        }
+
+        @Override
+        public void onRollback() {
+            Current op = current.get();
+            if (op != null) {
+                synchronized (ContentionTracer.this) {
+                    statsFor(op.operation).rollbacks++;
+                }
+            }
+        }
+    }
+
+    private class UpdateListener implements SQLiteUpdateListener {
+
+        @Override
+        public void onUpdate(Type type, String database, String table, long rowId) {
+            Current op = current.get();
+            if (op != null) {
+                op.rows++;
+            }
+        }
+    }
+
+    /**
+     * 当前线程正在执行的操作（只由该线程访问）
+     */
+    private static class Current {
+        private final String operation;
+        private long startNanos = System.nanoTime();
+        private int invocations;
+        private long waitNanos;
+        private boolean gaveUp;
+        private long rows;
+        private long commitNanos;
+
+        Current(String operation) {
+            this.operation = operation;
+        }
+    }
+
+    private static class OperationStats {
+        private long operations;
+        private long waitedOperations;
+        private long invocations;
+        private long gaveUp;
+        private long immediateBusy;
+        private long rollbacks;
+        private long rows;
+        private long waitMicros;
+        private final long[] waitBuckets = new long[WAIT_BOUNDS_MICROS.length + 1];
+        private final LatencyHistogram wait = new LatencyHistogram();
+        private final LatencyHistogram transaction = new LatencyHistogram();
+        private final LatencyHistogram commit = new LatencyHistogram();
+
+        void recordWait(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            waitedOperations++;
+            waitMicros += micros;
+            wait.recordMicros(micros);
+            int bucket = 0;
+            while (bucket < WAIT_BOUNDS_MICROS.length && micros >= WAIT_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            waitBuckets[bucket]++;
+        }
+
+        OperationProfile toProfile(String processName, String operation, long elapsedMillis) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("process", processName);
+            fields.put("op", operation);
+            fields.put("elapsed.ms", String.valueOf(elapsedMillis));
+            fields.put("ops", String.valueOf(operations));
+            fields.put("waited", String.valueOf(waitedOperations));
+            fields.put("invocations", String.valueOf(invocations));
+            fields.put("gaveup", String.valueOf(gaveUp));
+            fields.put("immediate", String.valueOf(immediateBusy));
+            fields.put("rollbacks", String.valueOf(rollbacks));
+            fields.put("rows", String.valueOf(rows));
+            fields.put("wait.us", String.valueOf(waitMicros));
+            fields.put("wait.p50.us", String.valueOf(wait.getPercentileMicros(50)));
+            fields.put("wait.p99.us", String.valueOf(wait.getPercentileMicros(99)));
+            fields.put("wait.max.us", String.valueOf(wait.getMaxMicros()));
+            StringBuilder histogram = new StringBuilder();
+            for (long count : waitBuckets) {
+                histogram.append(histogram.length() == 0 ? "" : "/").append(count);
+            }
+            fields.put("wait.hist", histogram.toString());
+            fields.put("txn.p50.us", String.valueOf(transaction.getPercentileMicros(50)));
+            fields.put("txn.p99.us", String.valueOf(transaction.getPercentileMicros(99)));
+            fields.put("commit.p50.us", String.valueOf(commit.getPercentileMicros(50)));
+            fields.put("commit.p99.us", String.valueOf(commit.getPercentileMicros(99)));
+            return new OperationProfile(fields);
+        }
+    }
+
+    /**
+     * 一个子进程中一种操作的竞争统计（主进程从子进程输出中解析）
+     */
+    public static class OperationProfile {
+
+        private final Map<String, String> fields;
+
+        private OperationProfile(Map<String, String> fields) {
+            this.fields = fields;
+        }
+
+        public static boolean isContentionLine(String line) {
+            return line != null && line.startsWith(LINE_PREFIX);
+        }
+
+        public String toLine() {
+            StringBuilder line = new StringBuilder(LINE_PREFIX);
+            fields.forEach((key, value) -> line.append(key).append('=').append(value).append(' '));
+            return line.toString().trim();
+        }
+
+        public static OperationProfile parse(String line) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (String token : line.substring(LINE_PREFIX.length()).trim().split(" ")) {
+                int separator = token.indexOf('=');
+                if (separator > 0) {
+                    fields.put(token.substring(0, separator), token.substring(separator + 1));
+                }
+            }
+            if (!fields.containsKey("process") || !fields.containsKey("op") || !fields.containsKey("ops")) {
+                throw new NfsTestException("Malformed contention line: " + line);
+            }
+            // 解析时就检查数值字段，格式错误的行在读取输出时被拒绝，不会留到汇总时才失败
+            OperationProfile profile = new OperationProfile(fields);
+            for (String key : fields.keySet()) {
+                if (!key.equals("process") && !key.equals("op") && !key.equals("wait.hist")) {
+                    profile.get(key);
+                }
+            }
+            return profile;
+        }
+
+        public String getProcess() {
+            return fields.get("process");
+        }
+
+        public String getOperation() {
+            return fields.get("op");
+        }
+
+        long get(String key) {
+            try {
+                return Long.parseLong(fields.getOrDefault(key, "0"));
+            } catch (NumberFormatException e) {
+                throw new NfsTestException("Malformed contention field " + key + "=" + fields.get(key), e);
+            }
+        }
+
+        /**
+         * 没有修改过行的操作只持有读锁，WAL模式下读者只会被检查点（RESTART/TRUNCATE）或WAL恢复阻塞
+         */
+        boolean isReadOnly() {
+            return get("rows") == 0;
+        }
+    }
+
+    /**
+     * 输出所有子进程的竞争统计和按操作类型的汇总，并给出等待主要来自哪里的提示
+     */
+    public static void logSummary(List<OperationProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return;
+        }
+        logger.info("=== Lock Contention ===");
+        logger.info(String.format("  %-18s %-14s %8s %7s %8s %9s %7s %9s %9s %-22s %9s %9s",
+                                  "process", "op", "ops", "waited", "waits/s", "wait ms", "wait%",
+                                  "wait p99", "gave up", "hist <1/10/100/1000ms+", "txn p99", "commit p99"));
+        Map<String, long[]> byOperation = new TreeMap<>();
+        long readWaitMicros = 0;
+        long writeWaitMicros = 0;
+        long immediate = 0;
+        long worstCommitP99 = 0;
+        long worstTransactionP99 = 0;
+        for (OperationProfile profile : profiles) {
+            long elapsedMillis = Math.max(1, profile.get("elapsed.ms"));
+            long waitMicros = profile.get("wait.us");
+            logger.info(String.format("  %-18s %-14s %8d %7d %8.1f %9d %6.2f%% %7dus %9d %-22s %7dus %8dus",
+                                      profile.getProcess(), profile.getOperation(), profile.get("ops"),
+                                      profile.get("waited"), profile.get("waited") * 1000.0 / elapsedMillis,
+                                      waitMicros / 1000, waitMicros / 10.0 / elapsedMillis,
+                                      profile.get("wait.p99.us"), profile.get("gaveup"),
+                                      profile.fields.getOrDefault("wait.hist", "-"),
+                                      profile.get("txn.p99.us"), profile.get("commit.p99.us")));
+            long[] totals = byOperation.computeIfAbsent(profile.getOperation(), key -> new long[4]);
+            totals[0] += profile.get("ops");
+            totals[1] += profile.get("waited");
+            totals[2] += waitMicros;
+            totals[3] += profile.get("gaveup") + profile.get("immediate");
+            if (profile.isReadOnly()) {
+                readWaitMicros += waitMicros;
+            } else {
+                writeWaitMicros += waitMicros;
+            }
+            immediate += profile.get("immediate");
+            worstCommitP99 = Math.max(worstCommitP99, profile.get("commit.p99.us"));
+            worstTransactionP99 = Math.max(worstTransactionP99, profile.get("txn.p99.us"));
+        }
+        byOperation.forEach((operation, totals) ->
+            logger.info("  total {}: ops={}, waited={} ({}%), lock wait={} ms, busy errors={}", operation, totals[0],
+                        totals[1], String.format("%.2f", totals[0] == 0 ? 0.0 : totals[1] * 100.0 / totals[0]),
+                        totals[2] / 1000, totals[3]));
+
+        if (writeWaitMicros > 0) {
+            logger.info("  Writers waited {} ms for the write lock: writer-writer contention "
+                        + "(or a RESTART/TRUNCATE checkpoint holding the writer lock)", writeWaitMicros / 1000);
+        }
+        if (readWaitMicros > 0) {
+            logger.info("  Read-only operations waited {} ms: in WAL mode only checkpoints (RESTART/TRUNCATE) "
+                        + "and WAL recovery block readers", readWaitMicros / 1000);
+        }
+        if (immediate > 0) {
+            logger.info("  {} busy errors were returned without calling the busy handler "
+                        + "(stale WAL snapshot on read-to-write upgrade)", immediate);
+        }
+        if (worstCommitP99 > 1000 && worstCommitP99 > 4 * worstTransactionP99) {
+            logger.info("  Commit p99 {} us is well above transaction p99 {} us: commits are slowed by WAL writes "
+                        + "and wal_autocheckpoint on the committing connection", worstCommitP99, worstTransactionP99);
+        }
+        if (writeWaitMicros == 0 && readWaitMicros == 0 && immediate == 0) {
+            logger.info("  No lock waits recorded");
+        }
+    }
+}
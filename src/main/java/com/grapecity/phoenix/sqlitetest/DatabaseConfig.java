@@ -4,6 +4,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.sqlite.SQLiteConfig;
 
 import javax.sql.DataSource;
 import java.io.File;
@@ -11,6 +12,11 @@ import java.io.File;
 @Configuration
 public class DatabaseConfig {
 
+    /**
+     * 以此前缀开头的路径表示共享缓存的内存数据库（只能在同一进程内共享），例如memory:compare
+     */
+    public static final String MEMORY_PREFIX = "memory:";
+
     @Bean
     public DataSource dataSource() {
         return createDataSource(getDefaultDatabasePath());
@@ -20,6 +26,13 @@ public class DatabaseConfig {
         DriverManagerDataSource dataSource = new DriverManagerDataSource();
         dataSource.setDriverClassName("org.sqlite.JDBC");
         
+        if (isInMemory(databasePath)) {
+            // 所有连接关闭后内存数据库即被销毁，调用方需要保持一个连接
+            dataSource.setUrl("jdbc:sqlite:file:" + databasePath.substring(MEMORY_PREFIX.length())
+                              + "?mode=memory&cache=shared");
+            return dataSource;
+        }
+        
         File dbFile = new File(databasePath);
         // 激进的SQLite配置以最大化NFS并发问题的触发概率
         // 使用URI格式确保跨平台兼容性
@@ -29,6 +42,10 @@ public class DatabaseConfig {
         return dataSource;
     }
     
+    public static boolean isInMemory(String databasePath) {
+        return databasePath.startsWith(MEMORY_PREFIX);
+    }
+    
     public static String getDefaultDatabasePath() {
         return "nfs-test.db";
     }
@@ -42,6 +59,19 @@ public class DatabaseConfig {
         return new JdbcTemplate(createDataSource(databasePath));
     }
     
+    /**
+     * 只读连接（SQLITE_OPEN_READONLY），用于并行校验；内存数据库不支持只读打开，返回普通连接
+     */
+    public static JdbcTemplate createReadOnlyJdbcTemplate(String databasePath) {
+        DataSource dataSource = createDataSource(databasePath);
+        if (!isInMemory(databasePath)) {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(true);
+            ((DriverManagerDataSource) dataSource).setConnectionProperties(config.toProperties());
+        }
+        return new JdbcTemplate(dataSource);
+    }
+    
     /**
      * 构建跨平台兼容的SQLite JDBC URL
      * SQLite JDBC驱动不支持URL参数，所以只返回基础URL
@@ -0,0 +1,784 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 页级别损坏取证扫描器 - 不经过SQLite，直接内存映射数据库文件解析
+ * 解析文件头、遍历所有b-tree和freelist，报告损坏页、freelist异常、未被引用的页以及WAL中最后一个有效帧
+ * 已提交的WAL帧会覆盖主文件中的同一页，与SQLite读取时看到的内容一致
+ */
+public class DatabaseForensics {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseForensics.class);
+    private static final byte[] MAGIC = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final long LOCK_BYTE_OFFSET = 1L << 30;
+
+    private final String databasePath;
+    private final int maxIssues;
+
+    private MappedFile databaseFile;
+    private MappedFile walFile;
+    private final Map<Long, Long> walPageFrames = new HashMap<>();
+    private int pageSize;
+    private int usableSize;
+    private long pageCount;
+    private BitSet usedPages;
+    private final ForensicReport report;
+
+    public DatabaseForensics(String databasePath) {
+        this(databasePath, TestOptions.getForensicsMaxIssues());
+    }
+
+    public DatabaseForensics(String databasePath, int maxIssues) {
+        this.databasePath = databasePath;
+        this.maxIssues = maxIssues;
+        this.report = new ForensicReport(maxIssues);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: DatabaseForensics <databasePath>");
+            System.exit(1);
+        }
+        ForensicReport report = new DatabaseForensics(args[0]).scan();
+        report.log();
+        System.exit(report.isClean() ? 0 : 2);
+    }
+
+    /**
+     * 执行扫描，扫描本身的异常也记录在报告中而不是抛出
+     */
+    public ForensicReport scan() {
+        long start = System.nanoTime();
+        report.databasePath = databasePath;
+        try {
+            File file = new File(databasePath);
+            if (!file.isFile()) {
+                report.fatal = "database file does not exist";
+                return report;
+            }
+            databaseFile = MappedFile.open(file);
+            File wal = new File(databasePath + "-wal");
+            if (wal.isFile() && wal.length() >= WalFrameVerifier.HEADER_SIZE) {
+                walFile = MappedFile.open(wal);
+            }
+
+            if (!readHeader()) {
+                return report;
+            }
+            scanWal();
+            readHeaderFields(readPage(1));
+            usedPages = new BitSet((int) Math.min(Integer.MAX_VALUE, pageCount + 1));
+            markSpecialPages();
+            scanFreelist();
+            scanSchemaAndTrees();
+            findOrphanPages();
+        } catch (IOException | RuntimeException e) {
+            report.fatal = "scanner aborted: " + e;
+        } finally {
+            closeQuietly(databaseFile);
+            closeQuietly(walFile);
+            report.scanMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+        return report;
+    }
+
+    // ---------- 文件头 ----------
+
+    private boolean readHeader() {
+        if (databaseFile.size() < 100) {
+            report.fatal = "file is shorter than the 100-byte SQLite header (" + databaseFile.size() + " bytes)";
+            return false;
+        }
+        ByteBuffer header = databaseFile.slice(0, 100);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                report.fatal = "bad header magic, file is not a database";
+                return false;
+            }
+        }
+        int rawPageSize = header.getShort(16) & 0xffff;
+        pageSize = rawPageSize == 1 ? 65536 : rawPageSize;
+        if (pageSize < 512 || Integer.bitCount(pageSize) != 1) {
+            report.fatal = "invalid page size " + rawPageSize;
+            return false;
+        }
+        int reserved = header.get(20) & 0xff;
+        usableSize = pageSize - reserved;
+        report.pageSize = pageSize;
+        report.reservedBytes = reserved;
+        pageCount = databaseFile.size() / pageSize;
+        return true;
+    }
+
+    /**
+     * 解析第1页中的文件头字段；第1页可能已被WAL中的新版本覆盖，所以在读取WAL之后调用
+     */
+    private void readHeaderFields(ByteBuffer header) {
+        long headerPages = header.getInt(28) & 0xffffffffL;
+        long filePages = databaseFile.size() / pageSize;
+        int changeCounter = header.getInt(24);
+        int validFor = header.getInt(92);
+
+        report.writeVersion = header.get(18);
+        report.readVersion = header.get(19);
+        report.changeCounter = changeCounter & 0xffffffffL;
+        report.headerPageCount = headerPages;
+        report.filePageCount = filePages;
+        report.headerFreelistTrunk = header.getInt(32) & 0xffffffffL;
+        report.headerFreelistCount = header.getInt(36) & 0xffffffffL;
+        report.schemaCookie = header.getInt(40);
+        report.largestRootPage = header.getInt(52) & 0xffffffffL;
+        report.incrementalVacuum = header.getInt(64) != 0;
+        report.textEncoding = header.getInt(56);
+        report.sqliteVersion = header.getInt(96);
+
+        // 与SQLite相同的规则：版本有效且非零时才信任文件头中的页数；有已提交WAL帧时以WAL为准
+        if (walPageFrames.isEmpty()) {
+            pageCount = headerPages != 0 && validFor == changeCounter ? headerPages : filePages;
+            if (headerPages != 0 && headerPages != filePages) {
+                report.addFileIssue("header page count " + headerPages + " differs from file size " + filePages + " pages");
+            }
+        }
+        if (databaseFile.size() % pageSize != 0) {
+            report.addFileIssue("file size " + databaseFile.size() + " is not a multiple of page size " + pageSize);
+        }
+    }
+
+    // ---------- WAL ----------
+
+    /**
+     * 校验WAL并记录每页最新的已提交帧，后续读页时优先使用
+     */
+    private void scanWal() {
+        if (walFile == null) {
+            return;
+        }
+        WalFrameVerifier verifier = new WalFrameVerifier();
+        String error = verifier.readHeader(walFile.slice(0, WalFrameVerifier.HEADER_SIZE));
+        report.walPresent = true;
+        if (error != null) {
+            report.walStopReason = error;
+            return;
+        }
+        if (verifier.getPageSize() != pageSize) {
+            report.walStopReason = "WAL page size " + verifier.getPageSize() + " differs from database page size";
+            return;
+        }
+
+        Map<Long, Long> pending = new HashMap<>();
+        long frameSize = WalFrameVerifier.FRAME_HEADER_SIZE + (long) pageSize;
+        long frames = (walFile.size() - WalFrameVerifier.HEADER_SIZE) / frameSize;
+        report.walFramesInFile = frames;
+        for (long frame = 1; frame <= frames; frame++) {
+            long offset = WalFrameVerifier.frameOffset(frame, pageSize);
+            ByteBuffer frameHeader = walFile.slice(offset, WalFrameVerifier.FRAME_HEADER_SIZE);
+            ByteBuffer page = walFile.slice(offset + WalFrameVerifier.FRAME_HEADER_SIZE, pageSize);
+            WalFrameVerifier.FrameStatus status = verifier.verifyFrame(frameHeader, page);
+            if (status == WalFrameVerifier.FrameStatus.VALID || status == WalFrameVerifier.FrameStatus.VALID_COMMIT) {
+                pending.put(frameHeader.getInt(0) & 0xffffffffL, offset + WalFrameVerifier.FRAME_HEADER_SIZE);
+                if (status == WalFrameVerifier.FrameStatus.VALID_COMMIT) {
+                    walPageFrames.putAll(pending);
+                    pending.clear();
+                }
+                continue;
+            }
+            report.walStopReason = "frame " + frame + ": " + status;
+            break;
+        }
+        report.walLastValidFrame = verifier.getLastValidFrame();
+        report.walLastCommitFrame = verifier.getLastCommitFrame();
+        report.walUncommittedFrames = verifier.getLastValidFrame() - verifier.getLastCommitFrame();
+        if (verifier.getLastCommitFrame() > 0) {
+            pageCount = verifier.getLastCommitDatabasePages();
+        }
+        report.walOverlayPages = walPageFrames.size();
+    }
+
+    // ---------- 页访问 ----------
+
+    private ByteBuffer readPage(long pageNumber) {
+        Long walOffset = walPageFrames.get(pageNumber);
+        if (walOffset != null) {
+            return walFile.slice(walOffset, pageSize);
+        }
+        long offset = (pageNumber - 1) * pageSize;
+        if (offset + pageSize > databaseFile.size()) {
+            return null;
+        }
+        return databaseFile.slice(offset, pageSize);
+    }
+
+    private boolean inRange(long pageNumber) {
+        return pageNumber >= 1 && pageNumber <= pageCount;
+    }
+
+    /**
+     * 标记页为已使用，重复引用说明存在交叉链接
+     */
+    private boolean claimPage(long pageNumber, String owner) {
+        if (!inRange(pageNumber)) {
+            report.addDamagedPage(pageNumber, owner, "page number out of range 1.." + pageCount);
+            return false;
+        }
+        if (usedPages.get((int) pageNumber)) {
+            report.addDamagedPage(pageNumber, owner, "page referenced more than once (cross-linked or cycle)");
+            return false;
+        }
+        usedPages.set((int) pageNumber);
+        return true;
+    }
+
+    // ---------- 特殊页 ----------
+
+    private void markSpecialPages() {
+        long lockPage = LOCK_BYTE_OFFSET / pageSize + 1;
+        if (lockPage <= pageCount) {
+            usedPages.set((int) lockPage);
+        }
+        // auto_vacuum数据库包含pointer-map页：第2页开始，每(usable/5 + 1)页一个
+        if (report.largestRootPage != 0) {
+            long interval = usableSize / 5 + 1;
+            for (long first = 2; first <= pageCount; first += interval) {
+                // 与加锁页重合的那一个pointer-map页顺延一页，之后的位置不受影响（同ptrmapPageno）
+                long page = first == lockPage ? first + 1 : first;
+                if (page > pageCount) {
+                    break;
+                }
+                usedPages.set((int) page);
+                report.pointerMapPages++;
+            }
+        }
+    }
+
+    // ---------- freelist ----------
+
+    private void scanFreelist() {
+        long trunk = report.headerFreelistTrunk;
+        long counted = 0;
+        long maxLeaves = usableSize / 4 - 2;
+        while (trunk != 0) {
+            if (!claimPage(trunk, "freelist-trunk")) {
+                report.addFreelistIssue("freelist trunk chain broken at page " + trunk);
+                break;
+            }
+            ByteBuffer page = readPage(trunk);
+            if (page == null) {
+                report.addFreelistIssue("freelist trunk page " + trunk + " is beyond end of file");
+                break;
+            }
+            report.pageTypes.merge("freelist-trunk", 1L, Long::sum);
+            counted++;
+            long next = page.getInt(0) & 0xffffffffL;
+            long leafCount = page.getInt(4) & 0xffffffffL;
+            if (leafCount > maxLeaves) {
+                report.addFreelistIssue("freelist trunk page " + trunk + " claims " + leafCount +
+                                        " leaves, maximum is " + maxLeaves);
+                leafCount = maxLeaves;
+            }
+            for (int i = 0; i < leafCount; i++) {
+                long leaf = page.getInt(8 + i * 4) & 0xffffffffL;
+                if (claimPage(leaf, "freelist-leaf")) {
+                    report.pageTypes.merge("freelist-leaf", 1L, Long::sum);
+                } else {
+                    report.addFreelistIssue("invalid freelist leaf " + leaf + " on trunk page " + trunk);
+                }
+                counted++;
+            }
+            trunk = next;
+        }
+        report.freelistPagesFound = counted;
+        if (counted != report.headerFreelistCount) {
+            report.addFreelistIssue("header freelist count " + report.headerFreelistCount +
+                                    " differs from " + counted + " pages found on the freelist");
+        }
+    }
+
+    // ---------- b-tree ----------
+
+    private void scanSchemaAndTrees() {
+        List<long[]> roots = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        walkTree(1, "sqlite_schema", true, (payload) -> {
+            List<Object> record = parseRecord(payload);
+            if (record.size() >= 4 && record.get(3) instanceof Long rootPage && rootPage > 0) {
+                boolean isTable = "table".equals(record.get(0));
+                roots.add(new long[]{rootPage, isTable ? 1 : 0});
+                names.add(String.valueOf(record.get(1)));
+            }
+        });
+        for (int i = 0; i < roots.size(); i++) {
+            long[] root = roots.get(i);
+            walkTree(root[0], names.get(i), root[1] == 1, null);
+        }
+        report.treeCount = roots.size() + 1;
+    }
+
+    private interface PayloadConsumer {
+        void accept(byte[] payload);
+    }
+
+    private void walkTree(long rootPage, String treeName, boolean tableTree, PayloadConsumer leafConsumer) {
+        int[] leafDepth = {-1};
+        walkPage(rootPage, treeName, tableTree, leafConsumer, 0, leafDepth);
+    }
+
+    private void walkPage(long pageNumber, String treeName, boolean tableTree, PayloadConsumer leafConsumer,
+                          int depth, int[] leafDepth) {
+        if (!claimPage(pageNumber, treeName)) {
+            return;
+        }
+        ByteBuffer page = readPage(pageNumber);
+        if (page == null) {
+            report.addDamagedPage(pageNumber, treeName, "page is beyond end of file");
+            return;
+        }
+        int headerOffset = pageNumber == 1 ? 100 : 0;
+        int type = page.get(headerOffset) & 0xff;
+        boolean interior = type == 0x02 || type == 0x05;
+        boolean leaf = type == 0x0a || type == 0x0d;
+        boolean typeIsTable = type == 0x05 || type == 0x0d;
+        String typeName = pageTypeName(type);
+        report.pageTypes.merge(typeName, 1L, Long::sum);
+
+        if (!interior && !leaf) {
+            report.addDamagedPage(pageNumber, treeName, String.format("invalid b-tree page type 0x%02x", type));
+            return;
+        }
+        if (typeIsTable != tableTree) {
+            report.addDamagedPage(pageNumber, treeName, typeName + " page inside a " +
+                                  (tableTree ? "table" : "index") + " b-tree");
+            return;
+        }
+
+        int cellCount = page.getShort(headerOffset + 3) & 0xffff;
+        int contentStart = page.getShort(headerOffset + 5) & 0xffff;
+        if (contentStart == 0) {
+            contentStart = 65536;
+        }
+        int pointerArray = headerOffset + (interior ? 12 : 8);
+        int pointerArrayEnd = pointerArray + cellCount * 2;
+        if (pointerArrayEnd > usableSize) {
+            report.addDamagedPage(pageNumber, treeName, "cell count " + cellCount + " overflows the page");
+            return;
+        }
+        if (contentStart < pointerArrayEnd || contentStart > usableSize) {
+            report.addDamagedPage(pageNumber, treeName, "cell content area starts at " + contentStart +
+                                  ", pointer array ends at " + pointerArrayEnd);
+        }
+        checkFreeblocks(page, pageNumber, treeName, headerOffset, pointerArrayEnd);
+
+        if (leaf) {
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = depth;
+            } else if (leafDepth[0] != depth) {
+                report.addDamagedPage(pageNumber, treeName, "leaf at depth " + depth + ", expected " + leafDepth[0]);
+            }
+        }
+
+        long previousRowid = Long.MIN_VALUE;
+        for (int i = 0; i < cellCount; i++) {
+            int cellOffset = page.getShort(pointerArray + i * 2) & 0xffff;
+            if (cellOffset < pointerArrayEnd || cellOffset >= usableSize) {
+                report.addDamagedPage(pageNumber, treeName, "cell " + i + " offset " + cellOffset + " outside content area");
+                continue;
+            }
+            try {
+                int position = cellOffset;
+                if (interior) {
+                    long child = page.getInt(position) & 0xffffffffL;
+                    position += 4;
+                    walkPage(child, treeName, tableTree, leafConsumer, depth + 1, leafDepth);
+                    if (tableTree) {
+                        long[] rowid = readVarint(page, position);
+                        if (rowid[0] < previousRowid) {
+                            report.addDamagedPage(pageNumber, treeName, "rowid keys out of order at cell " + i);
+                        }
+                        previousRowid = rowid[0];
+                        continue;
+                    }
+                }
+                long[] payloadSize = readVarint(page, position);
+                position += (int) payloadSize[1];
+                if (type == 0x0d) {
+                    long[] rowid = readVarint(page, position);
+                    position += (int) rowid[1];
+                    if (rowid[0] <= previousRowid) {
+                        report.addDamagedPage(pageNumber, treeName, "rowid keys out of order at cell " + i);
+                    }
+                    previousRowid = rowid[0];
+                }
+                byte[] payload = readPayload(page, pageNumber, treeName, position, payloadSize[0], type == 0x0d,
+                                             leafConsumer != null);
+                if (leaf && leafConsumer != null && payload != null) {
+                    leafConsumer.accept(payload);
+                }
+            } catch (IndexOutOfBoundsException e) {
+                report.addDamagedPage(pageNumber, treeName, "cell " + i + " runs past the end of the page");
+            }
+        }
+
+        if (interior) {
+            long rightChild = page.getInt(headerOffset + 8) & 0xffffffffL;
+            walkPage(rightChild, treeName, tableTree, leafConsumer, depth + 1, leafDepth);
+        }
+    }
+
+    private void checkFreeblocks(ByteBuffer page, long pageNumber, String treeName, int headerOffset, int pointerArrayEnd) {
+        int freeblock = page.getShort(headerOffset + 1) & 0xffff;
+        int previous = 0;
+        int guard = 0;
+        while (freeblock != 0 && guard++ < usableSize / 4) {
+            if (freeblock <= previous || freeblock < pointerArrayEnd || freeblock + 4 > usableSize) {
+                report.addDamagedPage(pageNumber, treeName, "corrupt freeblock chain at offset " + freeblock);
+                return;
+            }
+            int size = page.getShort(freeblock + 2) & 0xffff;
+            if (freeblock + size > usableSize) {
+                report.addDamagedPage(pageNumber, treeName, "freeblock at " + freeblock + " extends past the page");
+                return;
+            }
+            previous = freeblock;
+            freeblock = page.getShort(freeblock) & 0xffff;
+        }
+    }
+
+    /**
+     * 读取单元格的负载：本地部分 + 溢出页链；只有需要解析内容时才拷贝数据
+     */
+    private byte[] readPayload(ByteBuffer page, long pageNumber, String treeName, int position, long payloadSize,
+                               boolean tableLeaf, boolean copy) {
+        int maxLocal = tableLeaf ? usableSize - 35 : ((usableSize - 12) * 64 / 255) - 23;
+        int minLocal = ((usableSize - 12) * 32 / 255) - 23;
+        int localSize;
+        if (payloadSize <= maxLocal) {
+            localSize = (int) payloadSize;
+        } else {
+            long k = minLocal + ((payloadSize - minLocal) % (usableSize - 4));
+            localSize = (int) (k <= maxLocal ? k : minLocal);
+        }
+        if (position + localSize > usableSize) {
+            report.addDamagedPage(pageNumber, treeName, "cell payload runs past the end of the page");
+            return null;
+        }
+
+        byte[] payload = copy && payloadSize <= Integer.MAX_VALUE ? new byte[(int) payloadSize] : null;
+        if (payload != null) {
+            page.get(position, payload, 0, localSize);
+        }
+        if (localSize == payloadSize) {
+            return payload;
+        }
+
+        long overflow = page.getInt(position + localSize) & 0xffffffffL;
+        long remaining = payloadSize - localSize;
+        int written = localSize;
+        while (remaining > 0) {
+            if (overflow == 0) {
+                report.addDamagedPage(pageNumber, treeName, "overflow chain ends early, " + remaining + " bytes missing");
+                return null;
+            }
+            if (!claimPage(overflow, treeName + "-overflow")) {
+                return null;
+            }
+            ByteBuffer overflowPage = readPage(overflow);
+            if (overflowPage == null) {
+                report.addDamagedPage(overflow, treeName + "-overflow", "overflow page is beyond end of file");
+                return null;
+            }
+            report.pageTypes.merge("overflow", 1L, Long::sum);
+            int chunk = (int) Math.min(remaining, usableSize - 4);
+            if (payload != null) {
+                overflowPage.get(4, payload, written, chunk);
+            }
+            written += chunk;
+            remaining -= chunk;
+            overflow = overflowPage.getInt(0) & 0xffffffffL;
+        }
+        return payload;
+    }
+
+    // ---------- 记录解析 ----------
+
+    private static List<Object> parseRecord(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        List<Object> values = new ArrayList<>();
+        long[] headerSize = readVarint(buffer, 0);
+        int headerPosition = (int) headerSize[1];
+        int dataPosition = (int) headerSize[0];
+        while (headerPosition < headerSize[0]) {
+            long[] serialType = readVarint(buffer, headerPosition);
+            headerPosition += (int) serialType[1];
+            long type = serialType[0];
+            int size = serialTypeSize(type);
+            if (dataPosition + size > payload.length) {
+                break;
+            }
+            if (type >= 1 && type <= 6) {
+                long value = 0;
+                for (int i = 0; i < size; i++) {
+                    value = (value << 8) | (payload[dataPosition + i] & 0xff);
+                }
+                int shift = 64 - size * 8;
+                values.add((value << shift) >> shift);
+            } else if (type == 8 || type == 9) {
+                values.add(type - 8);
+            } else if (type >= 13 && type % 2 == 1) {
+                values.add(new String(payload, dataPosition, size, StandardCharsets.UTF_8));
+            } else {
+                values.add(null);
+            }
+            dataPosition += size;
+        }
+        return values;
+    }
+
+    private static int serialTypeSize(long type) {
+        if (type <= 4) {
+            return (int) type;
+        }
+        if (type == 5) {
+            return 6;
+        }
+        if (type == 6 || type == 7) {
+            return 8;
+        }
+        if (type < 12) {
+            return 0;
+        }
+        return (int) ((type - (type % 2 == 0 ? 12 : 13)) / 2);
+    }
+
+    /**
+     * 读取SQLite变长整数，返回{值, 字节数}
+     */
+    private static long[] readVarint(ByteBuffer buffer, int position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = buffer.get(position + i) & 0xff;
+            value = (value << 7) | (b & 0x7f);
+            if ((b & 0x80) == 0) {
+                return new long[]{value, i + 1};
+            }
+        }
+        value = (value << 8) | (buffer.get(position + 8) & 0xff);
+        return new long[]{value, 9};
+    }
+
+    // ---------- 未引用页 ----------
+
+    private void findOrphanPages() {
+        for (long page = 1; page <= pageCount; page++) {
+            if (!usedPages.get((int) page)) {
+                report.orphanPageCount++;
+                if (report.orphanPages.size() < maxIssues) {
+                    report.orphanPages.add(page);
+                }
+            }
+        }
+    }
+
+    private static String pageTypeName(int type) {
+        switch (type) {
+            case 0x02:
+                return "index-interior";
+            case 0x05:
+                return "table-interior";
+            case 0x0a:
+                return "index-leaf";
+            case 0x0d:
+                return "table-leaf";
+            default:
+                return "unknown";
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close mapped file", e);
+        }
+    }
+
+    /**
+     * 按1GB分段的只读内存映射文件（单个MappedByteBuffer最大2GB）
+     */
+    private static class MappedFile implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        private MappedFile(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            for (long offset = 0; offset < size; offset += SEGMENT_SIZE) {
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset)));
+            }
+        }
+
+        static MappedFile open(File file) throws IOException {
+            return new MappedFile(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * 返回[offset, offset+length)的视图；跨段时复制到堆内存
+         */
+        ByteBuffer slice(long offset, int length) {
+            int segment = (int) (offset / SEGMENT_SIZE);
+            int segmentOffset = (int) (offset % SEGMENT_SIZE);
+            MappedByteBuffer buffer = segments.get(segment);
+            if (segmentOffset + length <= buffer.capacity()) {
+                return buffer.slice(segmentOffset, length).order(ByteOrder.BIG_ENDIAN);
+            }
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            for (int i = 0; i < length; i++) {
+                long absolute = offset + i;
+                copy.put(i, segments.get((int) (absolute / SEGMENT_SIZE)).get((int) (absolute % SEGMENT_SIZE)));
+            }
+            return copy;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 取证报告
+     */
+    public static class ForensicReport {
+        private final int maxIssues;
+        private String databasePath;
+        private String fatal;
+        private long scanMillis;
+        private int pageSize;
+        private int reservedBytes;
+        private int writeVersion;
+        private int readVersion;
+        private long changeCounter;
+        private long headerPageCount;
+        private long filePageCount;
+        private long headerFreelistTrunk;
+        private long headerFreelistCount;
+        private int schemaCookie;
+        private long largestRootPage;
+        private boolean incrementalVacuum;
+        private int textEncoding;
+        private int sqliteVersion;
+        private int treeCount;
+        private long pointerMapPages;
+        private long freelistPagesFound;
+        private final Map<String, Long> pageTypes = new TreeMap<>();
+        private final List<String> fileIssues = new ArrayList<>();
+        private final List<String> damagedPages = new ArrayList<>();
+        private long damagedPageCount;
+        private final List<String> freelistIssues = new ArrayList<>();
+        private long orphanPageCount;
+        private final List<Long> orphanPages = new ArrayList<>();
+        private boolean walPresent;
+        private long walFramesInFile;
+        private long walLastValidFrame;
+        private long walLastCommitFrame;
+        private long walUncommittedFrames;
+        private long walOverlayPages;
+        private String walStopReason;
+
+        ForensicReport(int maxIssues) {
+            this.maxIssues = maxIssues;
+        }
+
+        void addFileIssue(String issue) {
+            fileIssues.add(issue);
+        }
+
+        void addDamagedPage(long page, String owner, String reason) {
+            damagedPageCount++;
+            if (damagedPages.size() < maxIssues) {
+                damagedPages.add("page " + page + " [" + owner + "]: " + reason);
+            }
+        }
+
+        void addFreelistIssue(String issue) {
+            freelistIssues.add(issue);
+        }
+
+        public boolean isClean() {
+            return fatal == null && fileIssues.isEmpty() && damagedPageCount == 0 && freelistIssues.isEmpty()
+                && orphanPageCount == 0;
+        }
+
+        public long getDamagedPageCount() {
+            return damagedPageCount;
+        }
+
+        public void log() {
+            logger.info("=== Forensic Scan: {} ({} ms) ===", databasePath, scanMillis);
+            if (fatal != null && pageSize == 0) {
+                logger.error("Forensic scan could not read the database: {}", fatal);
+                return;
+            }
+            logger.info("Header: page size={}, reserved={}, write/read version={}/{}, change counter={}, " +
+                        "pages header/file={}/{}, schema cookie={}, encoding={}, sqlite version={}",
+                        pageSize, reservedBytes, writeVersion, readVersion, changeCounter, headerPageCount,
+                        filePageCount, schemaCookie, textEncoding, sqliteVersion);
+            logger.info("Auto-vacuum: largest root page={}, incremental={}, pointer-map pages={}",
+                        largestRootPage, incrementalVacuum, pointerMapPages);
+            logger.info("B-trees: {}, page types: {}", treeCount, pageTypes);
+            logger.info("Freelist: header trunk={}, header count={}, found={}",
+                        headerFreelistTrunk, headerFreelistCount, freelistPagesFound);
+            if (walPresent) {
+                logger.info("WAL: frames in file={}, last valid frame={}, last good commit frame={}, " +
+                            "uncommitted frames={}, pages overlaid from WAL={}, stopped at: {}",
+                            walFramesInFile, walLastValidFrame, walLastCommitFrame, walUncommittedFrames,
+                            walOverlayPages, walStopReason != null ? walStopReason : "end of file");
+            }
+            for (String issue : fileIssues) {
+                logger.error("File issue: {}", issue);
+            }
+            if (damagedPageCount > 0) {
+                logger.error("Damaged pages: {} issue(s)", damagedPageCount);
+                damagedPages.forEach(issue -> logger.error("  {}", issue));
+            }
+            for (String issue : freelistIssues) {
+                logger.error("Freelist anomaly: {}", issue);
+            }
+            if (orphanPageCount > 0) {
+                logger.error("Pages never used by any b-tree or the freelist: {} (first: {})",
+                             orphanPageCount, orphanPages);
+            }
+            if (fatal != null) {
+                logger.error("Forensic scan aborted: {}", fatal);
+            }
+            if (isClean()) {
+                logger.info("Forensic scan: no page-level damage found");
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 自定义JFR事件 - 把SQLite层面的耗时和GC、安全点、文件I/O放在同一条时间线上
+ * 没有开启JFR记录时commit()几乎没有开销，所以热路径上无需额外判断
+ */
+public final class JfrEvents {
+
+    public static final String EVENT_PREFIX = "sqlitetest.";
+    private static final String CATEGORY = "SQLite NFS Test";
+
+    private static volatile String processName = "main";
+
+    private JfrEvents() {
+    }
+
+    /**
+     * 设置事件中记录的进程名，合并多个子进程的记录后用它区分来源
+     */
+    public static void setProcessName(String name) {
+        processName = name;
+    }
+
+    /**
+     * 按固定顺序注册事件类型，使各子进程的事件类型ID一致，否则拼接后的记录中后面chunk的部分事件无法被解析
+     */
+    public static void registerEventTypes() {
+        FlightRecorder.register(InsertEvent.class);
+        FlightRecorder.register(BusyWaitEvent.class);
+        FlightRecorder.register(QueryEvent.class);
+        FlightRecorder.register(InsertBatchEvent.class);
+        FlightRecorder.register(IntegrityCheckEvent.class);
+        FlightRecorder.register(CycleEvent.class);
+    }
+
+    @Name(EVENT_PREFIX + "Insert")
+    @Label("Insert")
+    @Description("单行插入，自动提交模式下即一个事务（包含忙重试）")
+    @Category(CATEGORY)
+    public static class InsertEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Sequence")
+        long seq;
+
+        @Label("Attempts")
+        int attempts;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name(EVENT_PREFIX + "BusyWait")
+    @Label("Busy Wait")
+    @Description("一次以SQLITE_BUSY结束的写入尝试，耗时即锁等待时间")
+    @Category(CATEGORY)
+    public static class BusyWaitEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Attempt")
+        int attempt;
+    }
+
+    @Name(EVENT_PREFIX + "Query")
+    @Label("Query")
+    @Category(CATEGORY)
+    public static class QueryEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Query Type")
+        String queryType;
+
+        @Label("Rows")
+        int rows;
+    }
+
+    @Name(EVENT_PREFIX + "InsertBatch")
+    @Label("Insert Batch")
+    @Description("一个工作周期中的密集插入阶段")
+    @Category(CATEGORY)
+    public static class InsertBatchEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Rows")
+        int rows;
+    }
+
+    @Name(EVENT_PREFIX + "IntegrityCheck")
+    @Label("Integrity Check")
+    @Category(CATEGORY)
+    public static class IntegrityCheckEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Passed")
+        boolean passed;
+    }
+
+    @Name(EVENT_PREFIX + "Cycle")
+    @Label("Work Cycle")
+    @Category(CATEGORY)
+    public static class CycleEvent extends Event {
+        @Label("Process")
+        String process = processName;
+
+        @Label("Cycle")
+        int cycle;
+
+        @Label("Inserted Rows")
+        int inserted;
+
+        @Label("Success")
+        boolean success;
+    }
+}
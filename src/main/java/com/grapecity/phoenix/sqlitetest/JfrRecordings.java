@@ -0,0 +1,117 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 子进程JFR记录管理 - 为每个子进程生成-XX:StartFlightRecording参数，测试结束后合并成一个文件
+ * JFR文件由独立的chunk组成，按顺序拼接即是合法的记录文件（与jfr assemble相同）
+ */
+public class JfrRecordings {
+
+    private static final Logger logger = LoggerFactory.getLogger(JfrRecordings.class);
+    private static final String GC_EVENT = "jdk.GarbageCollection";
+
+    private final File directory;
+    private final String runId;
+    private final List<File> childRecordings = new ArrayList<>();
+
+    public JfrRecordings() {
+        this.directory = new File(TestOptions.getJfrDirectory());
+        this.runId = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new NfsTestException("Cannot create JFR directory: " + directory);
+        }
+        logger.info("JFR recording enabled for child processes: settings={}, directory={}",
+                    TestOptions.getJfrSettings(), directory.getAbsolutePath());
+    }
+
+    /**
+     * 子进程的JVM参数，进程退出（包括System.exit）时自动写出记录
+     */
+    public synchronized List<String> childJvmArguments(String processName) {
+        File recording = new File(directory, runId + "-" + processName + ".jfr");
+        childRecordings.add(recording);
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-XX:StartFlightRecording=name=" + processName
+                      + ",settings=" + TestOptions.getJfrSettings()
+                      + ",filename=" + recording.getAbsolutePath()
+                      + ",dumponexit=true");
+        return arguments;
+    }
+
+    /**
+     * 拼接所有子进程的记录并输出自定义事件的汇总
+     */
+    public synchronized void mergeAndSummarize() {
+        List<File> existing = new ArrayList<>();
+        for (File recording : childRecordings) {
+            if (recording.isFile() && recording.length() > 0) {
+                existing.add(recording);
+            } else {
+                logger.warn("JFR recording {} was not written (child killed before dump?)", recording);
+            }
+        }
+        if (existing.isEmpty()) {
+            return;
+        }
+
+        Path merged = new File(directory, runId + "-merged.jfr").toPath();
+        try (OutputStream out = Files.newOutputStream(merged, StandardOpenOption.CREATE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (File recording : existing) {
+                Files.copy(recording.toPath(), out);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to merge JFR recordings into {}", merged, e);
+            return;
+        }
+        logger.info("Merged {} child JFR recordings into {} ({} bytes)",
+                    existing.size(), merged, merged.toFile().length());
+
+        try {
+            logSummary(merged);
+        } catch (IOException e) {
+            logger.error("Failed to read merged JFR recording {}", merged, e);
+        }
+    }
+
+    /**
+     * 按事件类型和进程汇总自定义事件的耗时分布，并给出同期GC次数作为对照
+     */
+    private void logSummary(Path merged) throws IOException {
+        Map<String, LatencyHistogram> durations = new TreeMap<>();
+        Map<String, LatencyHistogram> gcPauses = new TreeMap<>();
+        try (RecordingFile file = new RecordingFile(merged)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String type = event.getEventType().getName();
+                if (type.startsWith(JfrEvents.EVENT_PREFIX)) {
+                    String key = type.substring(JfrEvents.EVENT_PREFIX.length()) + " [" + event.getString("process") + "]";
+                    durations.computeIfAbsent(key, k -> new LatencyHistogram()).recordNanos(event.getDuration().toNanos());
+                } else if (GC_EVENT.equals(type)) {
+                    gcPauses.computeIfAbsent(event.getString("name"), k -> new LatencyHistogram())
+                            .recordNanos(event.getDuration("sumOfPauses").toNanos());
+                }
+            }
+        }
+        logger.info("=== JFR Event Summary ===");
+        durations.forEach((key, histogram) -> logger.info("{}: {}", key, histogram.describe()));
+        gcPauses.forEach((name, histogram) -> logger.info("GC {} pauses: {}", name, histogram.describe()));
+    }
+}
@@ -0,0 +1,67 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑的JSON行日志编码器 - 每个事件一行：时间戳(ms)、级别、线程、logger、格式化后的消息和异常堆栈
+ * logback自带的JsonEncoder每行都重复上下文属性且不输出格式化后的消息，不适合高频日志
+ */
+public class JsonLineEncoder extends EncoderBase<ILoggingEvent> {
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"ts\":").append(event.getTimeStamp());
+        json.append(",\"level\":\"").append(event.getLevel()).append('"');
+        appendField(json, "thread", event.getThreadName());
+        appendField(json, "logger", event.getLoggerName());
+        appendField(json, "msg", event.getFormattedMessage());
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            appendField(json, "error", ThrowableProxyUtil.asString(throwable));
+        }
+        json.append("}\n");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private static void appendField(StringBuilder json, String name, String value) {
+        json.append(",\"").append(name).append("\":");
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,108 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轻量级延迟直方图（微秒精度，按2的幂分段，每段8个线性子桶，误差约12%）
+ * 非线程安全，调用方负责同步
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalMicros;
+    private long maxMicros;
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        totalMicros += value;
+        maxMicros = Math.max(maxMicros, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        totalMicros += other.totalMicros;
+        maxMicros = Math.max(maxMicros, other.maxMicros);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalMicros = 0;
+        maxMicros = 0;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getMeanMicros() {
+        return totalCount == 0 ? 0 : totalMicros / totalCount;
+    }
+
+    /**
+     * 返回百分位数对应的延迟（取桶上界，不超过最大值）
+     */
+    public long getPercentileMicros(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(totalCount * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(bucketUpperBound(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * 简短的分布描述，用于日志输出
+     */
+    public String describe() {
+        return String.format("count=%d mean=%dus p50=%dus p90=%dus p99=%dus max=%dus",
+                             totalCount, getMeanMicros(), getPercentileMicros(50), getPercentileMicros(90),
+                             getPercentileMicros(99), maxMicros);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKET_COUNT - 1, (shift + 1) * SUB_BUCKETS + sub);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        if (shift + SUB_BUCKET_BITS >= 62) {
+            return Long.MAX_VALUE;
+        }
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+
+/**
+ * 日志模式 - classic使用logback.xml（同步appender，子进程日志经stdout转发到主进程）；
+ * async在进程启动时改用logback-async.xml：每个进程写自己的JSON行文件，经有界队列异步写入，子进程控制台只输出ERROR
+ */
+public final class LogSetup {
+
+    private static final String ASYNC_CONFIGURATION = "/logback-async.xml";
+
+    private LogSetup() {
+    }
+
+    /**
+     * 按nfs.test.log.mode配置当前进程的日志，在main方法开始时调用
+     *
+     * @param processName 日志文件名（main、ChildProcess-1等）
+     * @param child 子进程的控制台输出会被主进程读取，只保留ERROR
+     */
+    public static void configure(String processName, boolean child) {
+        if (!TestOptions.isAsyncLogging()) {
+            return;
+        }
+        URL configuration = LogSetup.class.getResource(ASYNC_CONFIGURATION);
+        if (configuration == null) {
+            throw new NfsTestException("Missing logging configuration " + ASYNC_CONFIGURATION);
+        }
+        String logDirectory = TestOptions.getLogDirectory();
+        new File(logDirectory).mkdirs();
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        context.putProperty("PROCESS_NAME", processName);
+        context.putProperty("LOG_DIR", logDirectory);
+        context.putProperty("CONSOLE_LEVEL", child ? "ERROR" : "INFO");
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        try {
+            configurator.doConfigure(configuration);
+        } catch (JoranException e) {
+            throw new NfsTestException("Failed to configure async logging", e);
+        }
+        if (!child) {
+            LoggerFactory.getLogger(LogSetup.class).info(
+                "Async logging: per-process JSON logs in {} ({}.jsonl, ChildProcess-N.jsonl)", logDirectory, processName);
+        }
+    }
+}
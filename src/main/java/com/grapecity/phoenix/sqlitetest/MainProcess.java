@@ -10,7 +10,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -23,7 +26,18 @@ public class MainProcess {
     private static final int DEFAULT_CHILD_PROCESS_COUNT = 2;
     private static final int DEFAULT_MAX_CYCLES = 30;
     
+    private final MetricsCollector metricsCollector = new MetricsCollector();
+    private final Map<String, Long> committedSequences = new ConcurrentHashMap<>();
+    private ConcurrencyController concurrencyController;
+    private ProcSampler procSampler;
+    private StorageProbe.StorageProfile storageProfile;
+    private final List<ContentionTracer.OperationProfile> contentionProfiles = new CopyOnWriteArrayList<>();
+    private JfrRecordings jfrRecordings;
+    private AgentCoordinator agentCoordinator;
+    private final List<String> childProcessNames = new ArrayList<>();
+    
     public static void main(String[] args) {
+        LogSetup.configure("main", false);
         int childProcessCount = DEFAULT_CHILD_PROCESS_COUNT;
         String databasePath = null;
         int maxCycles = DEFAULT_MAX_CYCLES;
@@ -35,6 +49,56 @@ public class MainProcess {
             return;
         }
         
+        // 代理模式：在本机等待协调者的连接
+        if (args.length > 0 && args[0].equals("--agent")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : AgentProtocol.DEFAULT_PORT;
+            new AgentDaemon(port).serve();
+            return;
+        }
+        
+        // 只对已有数据库执行页级取证扫描
+        if (args.length > 0 && args[0].equals("--scan")) {
+            String scanPath = args.length > 1 ? args[1] : DatabaseConfig.getDefaultDatabasePath();
+            DatabaseForensics.ForensicReport report = new DatabaseForensics(scanPath).scan();
+            report.log();
+            System.exit(report.isClean() ? 0 : 2);
+        }
+        
+        // 重放操作轨迹：--replay <轨迹文件或目录> [数据库] [recorded|max]
+        if (args.length > 0 && args[0].equals("--replay")) {
+            if (args.length < 2) {
+                printUsage();
+                System.exit(1);
+            }
+            String replayDatabase = args.length > 2 ? args[2] : DatabaseConfig.getDefaultDatabasePath();
+            boolean maxSpeed = args.length > 3 && args[3].equalsIgnoreCase("max");
+            TraceReplay.Summary summary = new TraceReplay(TraceReplay.findTraces(args[1]), maxSpeed).run(replayDatabase);
+            System.exit(summary.isSuccessful() ? 0 : summary.isCorruption() ? 2 : 1);
+        }
+        
+        // 只执行存储预检：--probe [目录]
+        if (args.length > 0 && args[0].equals("--probe")) {
+            File probeDirectory = new File(args.length > 1 ? args[1] : ".");
+            StorageProbe.StorageProfile profile = new StorageProbe(probeDirectory).run();
+            System.exit(profile.isUsable() ? 0 : 1);
+        }
+        
+        // 存储后端对比：--compare <目标列表> [进程数]
+        if (args.length > 0 && args[0].equals("--compare")) {
+            if (args.length < 2) {
+                printUsage();
+                System.exit(1);
+            }
+            List<String> targets = new ArrayList<>();
+            for (String target : args[1].split(",")) {
+                if (!target.isBlank()) {
+                    targets.add(target.trim());
+                }
+            }
+            int processes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHILD_PROCESS_COUNT;
+            System.exit(new StorageComparison(targets, processes).run() ? 0 : 1);
+        }
+        
         // 解析命令行参数
         if (args.length > 0) {
             try {
@@ -89,6 +153,18 @@ public class MainProcess {
         System.out.println("  cycles     - Max cycles per process (default: 100, -1 for unlimited)");
         System.out.println("  time       - Run time in seconds (only when cycles=0)");
         System.out.println();
+        System.out.println("  --scan [database]  - Page-level forensic scan of an existing database file");
+        System.out.println("  --replay <trace|dir> [database] [recorded|max]");
+        System.out.println("                     - Replay operation traces (-Dnfs.test.trace.enabled=true) in one process");
+        System.out.println("                       per trace, at recorded pacing (default) or as fast as possible");
+        System.out.println("  --probe [directory] - Measure fsync, locking, small I/O and rename latency of a directory");
+        System.out.println("  --compare <dir,dir,...,memory> [processes]");
+        System.out.println("                     - Replay the same seeded workload at max speed on each target");
+        System.out.println("                       directory (and a shared in-memory database) and compare");
+        System.out.println("  --agent [port]     - Run as agent, launching child processes for a remote coordinator");
+        System.out.println("                       (coordinator: -Dnfs.test.agents=host1:port,host2:port,");
+        System.out.println("                        processes = child processes per agent)");
+        System.out.println();
         System.out.println("Examples:");
         System.out.println("  java -jar sqlite-nfs-test.jar");
         System.out.println("  java -jar sqlite-nfs-test.jar 8");
@@ -111,27 +187,75 @@ public class MainProcess {
         }
         
         try {
+            // 轨迹只有users表的操作类型，扩展schema的订单事务不会被记录，重放和对比会悄悄丢掉这部分负载
+            if (TestOptions.isTraceEnabled() && TestOptions.isExtendedSchema()) {
+                throw new NfsTestException(TestOptions.PREFIX + "trace.enabled cannot be used with "
+                                           + TestOptions.PREFIX + "schema=extended: operation traces do not record "
+                                           + "the order workload, so --replay and --compare would drop it");
+            }
+            
+            // 确定工作负载种子，随其他nfs.test.*参数一起传给子进程
+            WorkloadSeed.resolve();
+            
+            // 测量数据库所在目录的存储特性，结果写入最终报告
+            if (TestOptions.isProbeEnabled() && !DatabaseConfig.isInMemory(databasePath)) {
+                storageProfile = new StorageProbe(StorageProbe.directoryOf(databasePath)).run();
+            }
+            
             // 1. 初始化数据库
             initializeDatabase(databasePath);
             
-            // 2. 创建同步文件用于进程协调
-            String syncFilePath = createSyncFile(databasePath);
+            // 2. 创建同步文件用于进程协调（代理模式下由各代理在本机同步）
+            List<String> agentAddresses = TestOptions.getAgents();
+            String syncFilePath = agentAddresses.isEmpty() ? createSyncFile(databasePath) : null;
             
-            // 3. 启动子进程
-            List<CompletableFuture<Integer>> childProcesses = startChildProcesses(
-                childProcessCount, databasePath, maxCycles, runTimeSeconds, syncFilePath);
+            if (TestOptions.isJfrEnabled() && agentAddresses.isEmpty()) {
+                jfrRecordings = new JfrRecordings();
+            }
             
+            // 自适应模式：子进程数量作为写入者上限，由控制器决定实际活动的写入者
+            if (TestOptions.isAdaptiveEnabled() && agentAddresses.isEmpty()) {
+                concurrencyController = new ConcurrencyController(metricsCollector, childProcessCount);
+            }
+            
+            // 子进程资源采样只对本机启动的子进程有效
+            if (TestOptions.isProcSamplerEnabled() && agentAddresses.isEmpty()) {
+                if (ProcSampler.isSupported()) {
+                    procSampler = new ProcSampler(metricsCollector);
+                } else {
+                    logger.info("/proc is not available, child resource sampling disabled");
+                }
+            }
+            
+            // 3. 启动子进程
             // 4. 信号所有进程开始同步工作
-            signalProcessesToStart(syncFilePath, childProcessCount);
+            List<CompletableFuture<Integer>> childProcesses;
+            if (agentAddresses.isEmpty()) {
+                childProcesses = startChildProcesses(
+                    childProcessCount, databasePath, maxCycles, runTimeSeconds, syncFilePath);
+                signalProcessesToStart(syncFilePath, childProcessCount);
+            } else {
+                childProcesses = startAgentChildProcesses(
+                    agentAddresses, childProcessCount, databasePath, maxCycles, runTimeSeconds);
+            }
             
             // 5. 监控子进程
-            monitorChildProcesses(childProcesses, databasePath, runTimeSeconds);
+            try {
+                monitorChildProcesses(childProcesses, databasePath, runTimeSeconds);
+            } finally {
+                if (agentCoordinator != null) {
+                    agentCoordinator.logSummary(metricsCollector);
+                    agentCoordinator.close();
+                }
+            }
             
             // 6. 输出最终结果
             printFinalResults(databasePath);
             
             // 7. 清理同步文件
-            cleanupSyncFile(syncFilePath);
+            if (syncFilePath != null) {
+                cleanupSyncFile(syncFilePath);
+            }
             
             logger.info("SQLite NFS multi-process test completed successfully");
             
@@ -144,7 +268,7 @@ public class MainProcess {
     /**
      * 初始化数据库：创建文件、创建表、插入初始数据
      */
-    private void initializeDatabase(String databasePath) {
+    static void initializeDatabase(String databasePath) {
         logger.info("Initializing database: {}", databasePath);
         
         try {
@@ -160,12 +284,22 @@ public class MainProcess {
             // 创建数据库连接
             JdbcTemplate jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
             UserRepository userRepository = new UserRepository(jdbcTemplate);
+            userRepository.setRandom(WorkloadSeed.forProcess("main"));
             
-            // 创建表
-            userRepository.createUsersTable();
+            if (TestOptions.isBulkSeedEnabled()) {
+                // 大数据量初始库：批量装载或克隆种子文件
+                new BulkSeeder(databasePath, jdbcTemplate, userRepository).seed(TestOptions.getSeedRows());
+            } else {
+                // 创建表
+                userRepository.createUsersTable();
+                
+                // 插入初始数据
+                userRepository.insertInitialData(TestOptions.DEFAULT_INITIAL_USER_COUNT);
+            }
             
-            // 插入初始数据
-            userRepository.insertInitialData(20);
+            if (TestOptions.isExtendedSchema()) {
+                new OrderRepository(jdbcTemplate).createSchema();
+            }
             
             int userCount = userRepository.getUserCount();
             logger.info("Database initialized successfully with {} users", userCount);
@@ -189,12 +323,31 @@ public class MainProcess {
             String processName = "ChildProcess-" + i;
             CompletableFuture<Integer> future = startChildProcess(processName, databasePath, maxCycles, runTimeSeconds, syncFilePath);
             futures.add(future);
+            childProcessNames.add(processName);
             logger.info("Started child process: {}", processName);
         }
         
         return futures;
     }
     
+    /**
+     * 通过各台机器上的代理启动子进程，所有代理就绪后统一释放启动屏障
+     */
+    private List<CompletableFuture<Integer>> startAgentChildProcesses(
+            List<String> agentAddresses, int processesPerAgent, String databasePath, int maxCycles, int runTimeSeconds) {
+        
+        logger.info("Coordinating {} agents with {} child processes each", agentAddresses.size(), processesPerAgent);
+        if (TestOptions.isAdaptiveEnabled() || TestOptions.isJfrEnabled()) {
+            logger.warn("Adaptive concurrency and JFR recording only apply to local child processes, ignored in agent mode");
+        }
+        agentCoordinator = new AgentCoordinator(agentAddresses, this::handleChildOutput);
+        Map<String, CompletableFuture<Integer>> launched = agentCoordinator.launch(
+            processesPerAgent, databasePath, maxCycles, runTimeSeconds);
+        childProcessNames.addAll(launched.keySet());
+        agentCoordinator.releaseStartBarrier();
+        return new ArrayList<>(launched.values());
+    }
+    
     /**
      * 启动单个子进程
      */
@@ -202,37 +355,42 @@ public class MainProcess {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 // 构建Java命令
-                String javaHome = System.getProperty("java.home");
-                String classpath = System.getProperty("java.class.path");
-                String javaExecutable = javaHome + "/bin/java";
-                
-                List<String> command = new ArrayList<>();
-                command.add(javaExecutable);
-                command.add("-cp");
-                command.add(classpath);
-                command.add("com.grapecity.phoenix.sqlitetest.ChildProcess");
-                command.add(processName);
-                command.add(databasePath);
-                command.add(String.valueOf(maxCycles));
-                command.add(String.valueOf(runTimeSeconds)); // 总是添加runTimeSeconds参数
-                command.add(syncFilePath); // 添加同步文件路径
+                List<String> jvmArguments = new ArrayList<>(TestOptions.toJvmArguments()); // 传递nfs.test.*扩展选项
+                if (jfrRecordings != null) {
+                    jvmArguments.addAll(jfrRecordings.childJvmArguments(processName));
+                }
+                List<String> command = ChildProcess.buildCommand(
+                    jvmArguments, processName, databasePath, maxCycles, runTimeSeconds, syncFilePath);
                 
                 // 启动进程
                 ProcessBuilder processBuilder = new ProcessBuilder(command);
                 processBuilder.redirectErrorStream(true);
                 Process process = processBuilder.start();
+                if (concurrencyController != null) {
+                    concurrencyController.register(processName, process.getOutputStream());
+                }
+                if (procSampler != null) {
+                    procSampler.register(processName, process.pid());
+                }
                 
                 // 读取进程输出
                 try (BufferedReader reader = new BufferedReader(
                         new InputStreamReader(process.getInputStream()))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        logger.info("[{}] {}", processName, line);
+                        handleChildOutput(processName, line);
                     }
                 }
+                // 输出结束说明子进程正在退出，在它被回收之前取最后一次采样
+                if (procSampler != null) {
+                    procSampler.unregister(processName);
+                }
                 
                 // 等待进程结束
                 int exitCode = process.waitFor();
+                if (concurrencyController != null) {
+                    concurrencyController.unregister(processName);
+                }
                 
                 if (exitCode == 0) {
                     logger.info("Child process {} completed successfully", processName);
@@ -256,16 +414,66 @@ public class MainProcess {
         });
     }
     
+    /**
+     * 处理子进程的一行输出：指标、序号和锁竞争统计交给汇总器，其余内容写入日志（本地子进程和代理转发的输出共用）
+     * 格式错误的行（例如子进程在输出一半时被终止）只记录警告，不能中断读取循环，否则子进程会阻塞在写满的管道上
+     */
+    private void handleChildOutput(String processName, String line) {
+        try {
+            if (MetricsSnapshot.isMetricsLine(line)) {
+                metricsCollector.accept(MetricsSnapshot.parse(line));
+            } else if (WriteSequence.isSequenceLine(line)) {
+                WriteSequence sequence = WriteSequence.parse(line);
+                committedSequences.merge(sequence.getWriter(), sequence.getCommitted(), Math::max);
+            } else if (ContentionTracer.OperationProfile.isContentionLine(line)) {
+                contentionProfiles.add(ContentionTracer.OperationProfile.parse(line));
+            } else if (!ChildProcess.READY_LINE.equals(line)) {
+                logger.info("[{}] {}", processName, line);
+            }
+        } catch (NfsTestException e) {
+            logger.warn("[{}] Ignoring malformed output line: {} ({})", processName, line, e.getMessage());
+        }
+    }
+    
     /**
      * 监控所有子进程
      */
     private void monitorChildProcesses(List<CompletableFuture<Integer>> childProcesses, String databasePath, int runTimeSeconds) {
         logger.info("Monitoring {} child processes", childProcesses.size());
+        MaintenanceWorker maintenanceWorker = null;
+        BackupTask backupTask = null;
+        WalMonitor walMonitor = null;
         
         try {
             // 启动实时统计输出线程
             CompletableFuture<Void> statisticsThread = startStatisticsThread(databasePath, runTimeSeconds);
             
+            // 启动WAL文件监控（只读文件，不占用SQLite锁）
+            if (TestOptions.isWalMonitorEnabled()) {
+                walMonitor = new WalMonitor(databasePath);
+                walMonitor.start();
+            }
+            
+            // 启动后台维护线程（保留策略 + 增量回收）
+            if (TestOptions.isMaintenanceEnabled()) {
+                maintenanceWorker = new MaintenanceWorker(databasePath, metricsCollector);
+                maintenanceWorker.start();
+            }
+            
+            // 启动在线备份任务
+            if (TestOptions.isBackupEnabled()) {
+                backupTask = new BackupTask(databasePath, metricsCollector);
+                backupTask.start();
+            }
+            
+            if (concurrencyController != null) {
+                concurrencyController.start();
+            }
+            
+            if (procSampler != null) {
+                procSampler.start();
+            }
+            
             // 等待所有子进程完成
             CompletableFuture<Void> allOf = CompletableFuture.allOf(
                 childProcesses.toArray(new CompletableFuture[0]));
@@ -279,7 +487,7 @@ public class MainProcess {
             
             for (int i = 0; i < childProcesses.size(); i++) {
                 int exitCode = childProcesses.get(i).get();
-                String processName = "ChildProcess-" + (i + 1);
+                String processName = childProcessNames.get(i);
                 
                 if (exitCode == 2) {
                     logger.error("Database corruption detected by {}", processName);
@@ -292,6 +500,7 @@ public class MainProcess {
             }
             
             if (databaseCorruption) {
+                runForensicScan(databasePath);
                 throw new NfsTestException("Database corruption detected by child processes");
             } else if (!allSuccessful) {
                 throw new NfsTestException("One or more child processes failed");
@@ -313,6 +522,25 @@ public class MainProcess {
             } else {
                 throw new NfsTestException("Child process monitoring failed", e);
             }
+        } finally {
+            if (maintenanceWorker != null) {
+                maintenanceWorker.stop();
+            }
+            if (backupTask != null) {
+                backupTask.stop();
+            }
+            if (walMonitor != null) {
+                walMonitor.stop();
+            }
+            if (concurrencyController != null) {
+                concurrencyController.stop();
+            }
+            if (procSampler != null) {
+                procSampler.stop();
+            }
+            if (jfrRecordings != null) {
+                jfrRecordings.mergeAndSummarize();
+            }
         }
     }
     
@@ -330,11 +558,17 @@ public class MainProcess {
             logger.info("Database file: {}", databasePath);
             logger.info("Final user count: {}", finalUserCount);
             logger.info("Database file size: {} bytes", new File(databasePath).length());
+            if (storageProfile != null) {
+                storageProfile.log();
+            }
+            metricsCollector.logSummary();
+            ContentionTracer.logSummary(contentionProfiles);
             
             // 执行综合数据库健康检查
-            boolean isHealthy = userRepository.performComprehensiveHealthCheck();
+            boolean isHealthy = new ParallelVerifier(databasePath).verify(committedSequences);
             if (!isHealthy) {
                 logger.error("Final database health check revealed issues - possible NFS-related corruption detected!");
+                runForensicScan(databasePath);
             }
             
             logger.info("=== Test Completed ===");
@@ -345,6 +579,17 @@ public class MainProcess {
         }
     }
     
+    /**
+     * 检测到损坏后执行页级取证扫描，直接读取文件，不依赖SQLite
+     */
+    private void runForensicScan(String databasePath) {
+        if (!TestOptions.isForensicsEnabled()) {
+            return;
+        }
+        logger.info("Running page-level forensic scan on {}", databasePath);
+        new DatabaseForensics(databasePath).scan().log();
+    }
+    
     /**
      * 启动实时统计输出线程
      */
@@ -0,0 +1,150 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+
+/**
+ * 后台维护线程 - 按保留策略小批量删除旧数据，并用有预算的incremental_vacuum回收空闲页
+ * 用于无限循环/长时间运行模式下保持数据库文件大小稳定
+ */
+public class MaintenanceWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(MaintenanceWorker.class);
+
+    private final String databasePath;
+    private final MetricsCollector metricsCollector;
+    private final UserRepository userRepository;
+    private Thread worker;
+
+    private long rounds;
+    private long totalDeleted;
+    private long totalReclaimedPages;
+    private final LatencyHistogram roundDurations = new LatencyHistogram();
+
+    public MaintenanceWorker(String databasePath, MetricsCollector metricsCollector) {
+        this.databasePath = databasePath;
+        this.metricsCollector = metricsCollector;
+        JdbcTemplate jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
+        this.userRepository = new UserRepository(jdbcTemplate);
+    }
+
+    public void start() {
+        long autoVacuum = userRepository.getPragmaValue("auto_vacuum");
+        if (autoVacuum != 2) {
+            logger.warn("Database auto_vacuum mode is {} (not INCREMENTAL), incremental_vacuum will not shrink the file",
+                        autoVacuum);
+        }
+        logger.info("Starting maintenance worker: retention max rows={}, retention seconds={}, interval={}ms, " +
+                    "delete batch={}, vacuum {} pages x {} steps per round",
+                    TestOptions.getRetentionMaxRows(), TestOptions.getRetentionSeconds(),
+                    TestOptions.getMaintenanceIntervalMillis(), TestOptions.getMaintenanceDeleteBatch(),
+                    TestOptions.getVacuumPagesPerStep(), TestOptions.getVacuumStepsPerRound());
+
+        worker = new Thread(this::runLoop, "MaintenanceWorker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        try {
+            worker.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Maintenance summary: rounds={}, deleted rows={}, reclaimed pages={}, round duration {}",
+                    rounds, totalDeleted, totalReclaimedPages, roundDurations.describe());
+    }
+
+    private void runLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(TestOptions.getMaintenanceIntervalMillis());
+                try {
+                    runRound();
+                } catch (RuntimeException e) {
+                    // 维护失败不终止测试，损坏由子进程和最终检查负责发现
+                    logger.error("Maintenance round failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Maintenance worker interrupted");
+        }
+    }
+
+    /**
+     * 一轮维护：删除过期数据 -> 回收空闲页 -> 输出文件状态
+     */
+    private void runRound() throws InterruptedException {
+        MetricsCollector.ActivityWindow window = metricsCollector.beginActivity("maintenance");
+        long start = System.nanoTime();
+        int deleted = 0;
+        long reclaimed = 0;
+        long freelistBefore;
+        try {
+            deleted = deleteExpiredRows();
+            freelistBefore = userRepository.getPragmaValue("freelist_count");
+            int pages = TestOptions.getVacuumPagesPerStep();
+            for (int step = 0; step < TestOptions.getVacuumStepsPerRound(); step++) {
+                if (userRepository.getPragmaValue("freelist_count") == 0) {
+                    break;
+                }
+                reclaimed += userRepository.incrementalVacuum(pages);
+                Thread.sleep(TestOptions.getMaintenanceBatchPauseMillis());
+            }
+        } finally {
+            metricsCollector.endActivity(window);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        rounds++;
+        totalDeleted += deleted;
+        totalReclaimedPages += reclaimed;
+        roundDurations.recordNanos(elapsedNanos);
+
+        logger.info("Maintenance round {}: deleted {} rows, reclaimed {} pages, freelist {} -> {} pages, " +
+                    "file size {} bytes, wal size {} bytes, took {} ms",
+                    rounds, deleted, reclaimed, freelistBefore, userRepository.getPragmaValue("freelist_count"),
+                    new File(databasePath).length(), new File(databasePath + "-wal").length(),
+                    elapsedNanos / 1_000_000);
+    }
+
+    /**
+     * 按保留策略分批删除，每批单独提交，批次之间短暂停顿让出写锁
+     * 删除边界在每轮开始时确定，避免追着正在写入的数据一直删下去
+     */
+    private int deleteExpiredRows() throws InterruptedException {
+        long maxRows = TestOptions.getRetentionMaxRows();
+        long retentionSeconds = TestOptions.getRetentionSeconds();
+
+        Long cutoffId = null;
+        if (maxRows > 0) {
+            cutoffId = userRepository.findRetentionCutoffId(maxRows);
+        }
+        if (retentionSeconds > 0) {
+            Long expiredId = userRepository.findExpiredCutoffId(retentionSeconds);
+            if (expiredId != null && (cutoffId == null || expiredId > cutoffId)) {
+                cutoffId = expiredId;
+            }
+        }
+        if (cutoffId == null) {
+            return 0;
+        }
+
+        int batchSize = TestOptions.getMaintenanceDeleteBatch();
+        int deleted = 0;
+        int batch;
+        while ((batch = userRepository.deleteUsersUpTo(cutoffId, batchSize)) > 0) {
+            deleted += batch;
+            Thread.sleep(TestOptions.getMaintenanceBatchPauseMillis());
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,179 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 主进程侧的指标汇总
+ * 接收子进程的区间快照，并按后台活动（维护、备份等）标记，对比活动期间与空闲期间的写入表现
+ */
+public class MetricsCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsCollector.class);
+    private static final String BASELINE = "baseline";
+
+    /**
+     * baseline区间太少时（例如只有预热阶段）对比没有意义
+     */
+    private static final int MIN_BASELINE_INTERVALS = 10;
+
+    private final List<MetricsSnapshot> snapshots = new ArrayList<>();
+    private final List<ActivityWindow> activities = new ArrayList<>();
+
+    public synchronized void accept(MetricsSnapshot snapshot) {
+        snapshots.add(snapshot);
+    }
+
+    /**
+     * 标记一个后台活动开始，返回的窗口需要调用{@link #endActivity(ActivityWindow)}结束
+     */
+    public synchronized ActivityWindow beginActivity(String name) {
+        ActivityWindow window = new ActivityWindow(name, System.currentTimeMillis());
+        activities.add(window);
+        return window;
+    }
+
+    public synchronized void endActivity(ActivityWindow window) {
+        window.endMillis = System.currentTimeMillis();
+    }
+
+    public synchronized List<MetricsSnapshot> getSnapshotsSince(long sinceMillis) {
+        List<MetricsSnapshot> result = new ArrayList<>();
+        for (MetricsSnapshot snapshot : snapshots) {
+            if (snapshot.getEndMillis() > sinceMillis) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<MetricsSnapshot> getAllSnapshots() {
+        return new ArrayList<>(snapshots);
+    }
+
+    /**
+     * 按活动分组汇总：没有任何活动重叠的区间计入baseline
+     */
+    public synchronized Map<String, WindowSummary> summarizeByActivity() {
+        Map<String, WindowSummary> result = new LinkedHashMap<>();
+        result.put(BASELINE, new WindowSummary());
+        for (MetricsSnapshot snapshot : snapshots) {
+            TreeSet<String> tags = new TreeSet<>();
+            for (ActivityWindow window : activities) {
+                if (window.overlaps(snapshot.getStartMillis(), snapshot.getEndMillis())) {
+                    tags.add(window.name);
+                }
+            }
+            if (tags.isEmpty()) {
+                tags.add(BASELINE);
+            }
+            for (String tag : tags) {
+                result.computeIfAbsent(tag, key -> new WindowSummary()).add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 输出写入性能汇总，以及每类后台活动相对baseline的影响
+     */
+    public void logSummary() {
+        Map<String, WindowSummary> summaries = summarizeByActivity();
+        WindowSummary baseline = summaries.get(BASELINE);
+        logger.info("=== Writer Metrics ===");
+        for (Map.Entry<String, WindowSummary> entry : summaries.entrySet()) {
+            WindowSummary summary = entry.getValue();
+            if (summary.intervals == 0) {
+                continue;
+            }
+            logger.info("{}: intervals={}, writes/s={}, avg p99={}us, worst p99={}us, busy errors={}",
+                        entry.getKey(), summary.intervals, String.format("%.1f", summary.getOpsPerSecond()),
+                        summary.getAverageP99Micros(), summary.worstP99Micros, summary.busyErrors);
+            if (BASELINE.equals(entry.getKey())) {
+                continue;
+            }
+            if (baseline.intervals < MIN_BASELINE_INTERVALS) {
+                logger.warn("{} impact vs baseline not computed: only {} baseline intervals (need {})",
+                            entry.getKey(), baseline.intervals, MIN_BASELINE_INTERVALS);
+            } else {
+                logger.info("{} impact vs baseline: throughput {}%, avg p99 {}%", entry.getKey(),
+                            String.format("%+.1f", percentChange(baseline.getOpsPerSecond(), summary.getOpsPerSecond())),
+                            String.format("%+.1f", percentChange(baseline.getAverageP99Micros(), summary.getAverageP99Micros())));
+            }
+        }
+    }
+
+    private static double percentChange(double base, double value) {
+        return base == 0 ? 0 : (value - base) * 100.0 / base;
+    }
+
+    /**
+     * 后台活动的时间窗口
+     */
+    public static class ActivityWindow {
+        private final String name;
+        private final long startMillis;
+        private volatile long endMillis = Long.MAX_VALUE;
+
+        ActivityWindow(String name, long startMillis) {
+            this.name = name;
+            this.startMillis = startMillis;
+        }
+
+        boolean overlaps(long from, long to) {
+            return startMillis < to && endMillis > from;
+        }
+    }
+
+    /**
+     * 一组区间快照的聚合结果（吞吐按各子进程求和）
+     */
+    public static class WindowSummary {
+        private int intervals;
+        private long operations;
+        private long processMillis;
+        private long p99Sum;
+        private long worstP99Micros;
+        private long busyErrors;
+        private final TreeSet<String> processes = new TreeSet<>();
+
+        void add(MetricsSnapshot snapshot) {
+            intervals++;
+            operations += snapshot.getOperations();
+            processMillis += Math.max(1, snapshot.getEndMillis() - snapshot.getStartMillis());
+            p99Sum += snapshot.getP99Micros();
+            worstP99Micros = Math.max(worstP99Micros, snapshot.getP99Micros());
+            busyErrors += snapshot.getBusyErrors();
+            processes.add(snapshot.getProcessName());
+        }
+
+        public int getIntervals() {
+            return intervals;
+        }
+
+        /**
+         * 平均每个进程的写入速率乘以进程数，近似为全体写入者的总吞吐
+         */
+        public double getOpsPerSecond() {
+            return processMillis == 0 ? 0 : operations * 1000.0 / processMillis * processes.size();
+        }
+
+        public long getAverageP99Micros() {
+            return intervals == 0 ? 0 : p99Sum / intervals;
+        }
+
+        public long getWorstP99Micros() {
+            return worstP99Micros;
+        }
+
+        public long getBusyErrors() {
+            return busyErrors;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 子进程一个统计区间内的写入指标
+ * 通过标准输出以单行文本传给主进程，格式：@METRICS key=value key=value ...
+ */
+public class MetricsSnapshot {
+
+    public static final String LINE_PREFIX = "@METRICS ";
+
+    private final String processName;
+    private final long startMillis;
+    private final long endMillis;
+    private final long operations;
+    private final long errors;
+    private final long busyErrors;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    public MetricsSnapshot(String processName, long startMillis, long endMillis, long operations,
+                           long errors, long busyErrors, long p50Micros, long p99Micros, long maxMicros) {
+        this.processName = processName;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.operations = operations;
+        this.errors = errors;
+        this.busyErrors = busyErrors;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public static boolean isMetricsLine(String line) {
+        return line != null && line.startsWith(LINE_PREFIX);
+    }
+
+    public String toLine() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("process", processName);
+        fields.put("start", startMillis);
+        fields.put("end", endMillis);
+        fields.put("ops", operations);
+        fields.put("errors", errors);
+        fields.put("busy", busyErrors);
+        fields.put("p50", p50Micros);
+        fields.put("p99", p99Micros);
+        fields.put("max", maxMicros);
+
+        StringBuilder line = new StringBuilder(LINE_PREFIX);
+        fields.forEach((key, value) -> line.append(key).append('=').append(value).append(' '));
+        return line.toString().trim();
+    }
+
+    public static MetricsSnapshot parse(String line) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (String token : line.substring(LINE_PREFIX.length()).trim().split(" ")) {
+            int separator = token.indexOf('=');
+            if (separator > 0) {
+                fields.put(token.substring(0, separator), token.substring(separator + 1));
+            }
+        }
+        try {
+            return new MetricsSnapshot(
+                fields.get("process"),
+                Long.parseLong(fields.get("start")),
+                Long.parseLong(fields.get("end")),
+                Long.parseLong(fields.get("ops")),
+                Long.parseLong(fields.get("errors")),
+                Long.parseLong(fields.get("busy")),
+                Long.parseLong(fields.get("p50")),
+                Long.parseLong(fields.get("p99")),
+                Long.parseLong(fields.get("max")));
+        } catch (RuntimeException e) {
+            throw new NfsTestException("Malformed metrics line: " + line, e);
+        }
+    }
+
+    public String getProcessName() {
+        return processName;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getBusyErrors() {
+        return busyErrors;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public double getOpsPerSecond() {
+        long duration = Math.max(1, endMillis - startMillis);
+        return operations * 1000.0 / duration;
+    }
+}
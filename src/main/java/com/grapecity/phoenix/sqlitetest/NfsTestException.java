@@ -34,4 +34,22 @@ public class NfsTestException extends RuntimeException {
                message.contains("database is locked") ||
                message.contains("sqlite_busy");
     }
+    
+    /**
+     * 检查异常链中是否有锁等待超时（SQLITE_BUSY），包装后的异常消息里不一定保留原始信息
+     * 共享缓存的内存数据库上表级锁冲突返回SQLITE_LOCKED，同样按锁等待处理
+     */
+    public static boolean isBusy(Throwable throwable) {
+        for (Throwable current = throwable; current != null; current = current.getCause()) {
+            String message = current.getMessage();
+            if (message != null) {
+                message = message.toLowerCase();
+                if (message.contains("database is locked") || message.contains("sqlite_busy")
+                    || message.contains("sqlite_locked")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
\ No newline at end of file
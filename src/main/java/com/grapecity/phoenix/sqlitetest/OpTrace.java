@@ -0,0 +1,283 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 子进程操作轨迹 - 紧凑的二进制格式，记录每个操作的类型、参数、开始时间和耗时，用于重放
+ *
+ * 文件头：magic "SQTR"、版本号、进程名（UTF）、工作负载种子、开始时间（毫秒）
+ * 记录：类型(1字节) + 距上一操作开始的间隔纳秒(varint) + 耗时纳秒(varint) + 结果(1字节) + 参数
+ *   QUERY       查询类型(1字节) + minAge + maxAge(varint)
+ *   INSERT      批内序号 + 年龄(varint) + 数据标记(8字节) + 写入序号 + 尝试次数(varint)
+ *   INTEGRITY   无参数
+ *   HEALTH      无参数
+ *   CYCLE_END   周期号(varint)，同时是刷盘点
+ * 插入的姓名、邮箱和数据由进程名和参数按固定规则生成，不重复存储字符串，一次插入约15字节
+ */
+public final class OpTrace {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpTrace.class);
+    private static final int MAGIC = 0x53515452; // "SQTR"
+    private static final int VERSION = 1;
+
+    public static final String FILE_SUFFIX = ".trace";
+
+    public static final byte QUERY = 1;
+    public static final byte INSERT = 2;
+    public static final byte INTEGRITY = 3;
+    public static final byte HEALTH = 4;
+    public static final byte CYCLE_END = 5;
+
+    public static final byte OK = 0;
+    public static final byte FAILED = 1;
+
+    private OpTrace() {
+    }
+
+    /**
+     * 一条操作记录，参数字段按类型取用
+     */
+    public static final class Op {
+        public byte type;
+        /** 相对轨迹开始的纳秒数 */
+        public long startNanos;
+        public long durationNanos;
+        public byte outcome;
+        public int queryType;
+        public int minAge;
+        public int maxAge;
+        public int index;
+        public int age;
+        public long dataToken;
+        public long seq;
+        public int attempts;
+        public int cycle;
+    }
+
+    /**
+     * 轨迹写入器，只由子进程的工作线程调用；每个周期结束和进程退出时刷盘
+     */
+    public static final class Writer {
+        private final File file;
+        private final DataOutputStream out;
+        private long lastStartNanos = System.nanoTime();
+        private long records;
+        private boolean closed;
+
+        public Writer(File file, String processName, long seed) {
+            this.file = file;
+            try {
+                File parent = file.getAbsoluteFile().getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Cannot create trace directory: " + parent);
+                }
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeUTF(processName);
+                out.writeLong(seed);
+                out.writeLong(System.currentTimeMillis());
+            } catch (IOException e) {
+                throw new NfsTestException("Failed to create operation trace " + file, e);
+            }
+            // 检测到损坏时子进程直接System.exit，关闭钩子保证轨迹完整写出
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "OpTrace-Flush"));
+            logger.info("Recording operation trace to {}", file);
+        }
+
+        public synchronized void query(long startNanos, byte outcome, int queryType, int minAge, int maxAge) {
+            if (begin(OpTrace.QUERY, startNanos, outcome)) {
+                write(() -> {
+                    out.writeByte(queryType);
+                    writeVarLong(out, minAge);
+                    writeVarLong(out, maxAge);
+                });
+            }
+        }
+
+        public synchronized void insert(long startNanos, byte outcome, int index, int age, long dataToken,
+                                        long seq, int attempts) {
+            if (begin(OpTrace.INSERT, startNanos, outcome)) {
+                write(() -> {
+                    writeVarLong(out, index);
+                    writeVarLong(out, age);
+                    out.writeLong(dataToken);
+                    writeVarLong(out, seq);
+                    writeVarLong(out, attempts);
+                });
+            }
+        }
+
+        public synchronized void simple(byte type, long startNanos, byte outcome) {
+            begin(type, startNanos, outcome);
+        }
+
+        public synchronized void cycleEnd(int cycle) {
+            if (begin(CYCLE_END, System.nanoTime(), OK)) {
+                write(() -> writeVarLong(out, cycle));
+                flush();
+            }
+        }
+
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+                logger.info("Operation trace closed: {} operations, {} bytes", records, file.length());
+            } catch (IOException e) {
+                logger.warn("Failed to close operation trace {}", file, e);
+            }
+        }
+
+        private boolean begin(byte type, long opStartNanos, byte outcome) {
+            if (closed) {
+                return false;
+            }
+            long endNanos = System.nanoTime();
+            write(() -> {
+                out.writeByte(type);
+                writeVarLong(out, Math.max(0, opStartNanos - lastStartNanos));
+                writeVarLong(out, Math.max(0, endNanos - opStartNanos));
+                out.writeByte(outcome);
+            });
+            lastStartNanos = Math.max(lastStartNanos, opStartNanos);
+            records++;
+            return true;
+        }
+
+        private void flush() {
+            write(out::flush);
+        }
+
+        private void write(IoAction action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                // 轨迹只是旁路记录，写失败时停止记录但不影响测试本身
+                logger.error("Failed to write operation trace {}, recording stopped", file, e);
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * 轨迹读取器；文件尾部不完整的记录（进程被强制终止时）被忽略
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final String processName;
+        private final long seed;
+        private final long startEpochMillis;
+        private long nextStartNanos;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Not an operation trace: " + file);
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported trace version " + version + ": " + file);
+            }
+            processName = in.readUTF();
+            seed = in.readLong();
+            startEpochMillis = in.readLong();
+        }
+
+        /**
+         * 读取下一条记录，文件结束时返回null
+         */
+        public Op next() throws IOException {
+            try {
+                Op op = new Op();
+                op.type = in.readByte();
+                nextStartNanos += readVarLong(in);
+                op.startNanos = nextStartNanos;
+                op.durationNanos = readVarLong(in);
+                op.outcome = in.readByte();
+                switch (op.type) {
+                    case QUERY:
+                        op.queryType = in.readUnsignedByte();
+                        op.minAge = (int) readVarLong(in);
+                        op.maxAge = (int) readVarLong(in);
+                        break;
+                    case INSERT:
+                        op.index = (int) readVarLong(in);
+                        op.age = (int) readVarLong(in);
+                        op.dataToken = in.readLong();
+                        op.seq = readVarLong(in);
+                        op.attempts = (int) readVarLong(in);
+                        break;
+                    case CYCLE_END:
+                        op.cycle = (int) readVarLong(in);
+                        break;
+                    case INTEGRITY:
+                    case HEALTH:
+                        break;
+                    default:
+                        throw new IOException("Unknown trace record type " + op.type);
+                }
+                return op;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        public String getProcessName() {
+            return processName;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public long getStartEpochMillis() {
+            return startEpochMillis;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in trace");
+    }
+}
@@ -0,0 +1,369 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 扩展schema的数据访问 - orders、order_events和user_stats三张表，带外键和复合二级索引，
+ * 写入都是跨表事务：下单同时写订单、事件并UPSERT用户统计，推进订单状态同时更新订单（移动两个索引项）并追加事件
+ *
+ * 每次写入都要维护多张表上的多个索引，用来重现索引维护带来的写放大；
+ * 外键只在开启了foreign_keys的连接上生效，所以每个事务都在同一个连接上先开启外键再BEGIN IMMEDIATE
+ */
+public class OrderRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRepository.class);
+    private static final String[] STATUSES = {"created", "paid", "shipped", "delivered"};
+    private static final int MAX_OPEN_ORDERS = 1000;
+    private static final int MAX_BUSY_RETRIES = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private Random random = new Random();
+    private WriterMetrics writerMetrics;
+    private WriterPacing writerPacing;
+    private ContentionTracer contentionTracer;
+    // 本进程创建且未送达的订单（订单ID -> 当前状态序号），推进状态时从中随机挑选
+    private final List<long[]> openOrders = new ArrayList<>();
+    private long maxUserId;
+
+    public OrderRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    public void setWriterMetrics(WriterMetrics writerMetrics) {
+        this.writerMetrics = writerMetrics;
+    }
+
+    public void setWriterPacing(WriterPacing writerPacing) {
+        this.writerPacing = writerPacing;
+    }
+
+    public void setContentionTracer(ContentionTracer contentionTracer) {
+        this.contentionTracer = contentionTracer;
+    }
+
+    /**
+     * 创建扩展schema（users表必须已经存在）
+     */
+    public void createSchema() {
+        try {
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS orders (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    user_id INTEGER NOT NULL REFERENCES users(id),
+                    status TEXT NOT NULL,
+                    amount_cents INTEGER NOT NULL,
+                    item_count INTEGER NOT NULL,
+                    writer TEXT NOT NULL,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+                """);
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS order_events (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    order_id INTEGER NOT NULL REFERENCES orders(id) ON DELETE CASCADE,
+                    user_id INTEGER NOT NULL REFERENCES users(id),
+                    type TEXT NOT NULL,
+                    payload TEXT,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+                """);
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS user_stats (
+                    user_id INTEGER PRIMARY KEY REFERENCES users(id),
+                    order_count INTEGER NOT NULL,
+                    total_cents INTEGER NOT NULL,
+                    last_order_id INTEGER,
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+                """);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_orders_user_status ON orders(user_id, status)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_orders_status_updated ON orders(status, updated_at)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_events_order_created ON order_events(order_id, created_at)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_events_user_type ON order_events(user_id, type)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_user_stats_total ON user_stats(total_cents)");
+            logger.info("Extended schema (orders, order_events, user_stats) created or already exists");
+        } catch (Exception e) {
+            logger.error("Failed to create extended schema", e);
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected while creating extended schema", e);
+            }
+            throw new NfsTestException("Failed to create extended schema", e);
+        }
+    }
+
+    /**
+     * 下单：一个事务内写入订单、1到N条事件，并UPSERT该用户的统计行
+     *
+     * @return 新订单ID，没有可用的用户时返回0
+     */
+    public long placeOrder(String processName) {
+        int itemCount = 1 + random.nextInt(TestOptions.getOrderMaxItems());
+        long amountCents = 100 + random.nextInt(100_000);
+        long userIdHint = 1 + (long) (random.nextDouble() * Math.max(1, maxUserId));
+        String payload = Long.toHexString(random.nextLong());
+        long orderId = inTransaction(connection -> {
+            // 保留策略可能删除了部分用户，取不小于随机ID的第一个用户
+            Long userId = queryLong(connection, "SELECT id FROM users WHERE id >= ? ORDER BY id LIMIT 1", userIdHint);
+            if (userId == null) {
+                userId = queryLong(connection, "SELECT MAX(id) FROM users");
+            }
+            if (userId == null) {
+                return 0L;
+            }
+            long id;
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO orders (user_id, status, amount_cents, item_count, writer) VALUES (?, ?, ?, ?, ?)")) {
+                insert.setLong(1, userId);
+                insert.setString(2, STATUSES[0]);
+                insert.setLong(3, amountCents);
+                insert.setInt(4, itemCount);
+                insert.setString(5, processName);
+                insert.executeUpdate();
+            }
+            id = queryLong(connection, "SELECT last_insert_rowid()");
+            insertEvent(connection, id, userId, "created", payload);
+            for (int item = 1; item < itemCount; item++) {
+                insertEvent(connection, id, userId, "item_added", payload + "-" + item);
+            }
+            try (PreparedStatement upsert = connection.prepareStatement("""
+                    INSERT INTO user_stats (user_id, order_count, total_cents, last_order_id) VALUES (?, 1, ?, ?)
+                    ON CONFLICT(user_id) DO UPDATE SET
+                        order_count = order_count + 1,
+                        total_cents = total_cents + excluded.total_cents,
+                        last_order_id = excluded.last_order_id,
+                        updated_at = CURRENT_TIMESTAMP
+                    """)) {
+                upsert.setLong(1, userId);
+                upsert.setLong(2, amountCents);
+                upsert.setLong(3, id);
+                upsert.executeUpdate();
+            }
+            return id;
+        });
+        if (orderId > 0) {
+            if (openOrders.size() >= MAX_OPEN_ORDERS) {
+                openOrders.remove(0);
+            }
+            openOrders.add(new long[]{orderId, 0});
+        }
+        return orderId;
+    }
+
+    /**
+     * 推进本进程一个未完成订单的状态：更新订单（状态变化移动两个索引项）并追加状态事件
+     *
+     * @return 没有未完成的订单时返回false
+     */
+    public boolean advanceOrder() {
+        if (openOrders.isEmpty()) {
+            return false;
+        }
+        int index = random.nextInt(openOrders.size());
+        long[] order = openOrders.get(index);
+        int next = (int) order[1] + 1;
+        String status = STATUSES[next];
+        int updated = inTransaction(connection -> {
+            Long userId;
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE orders SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ? RETURNING user_id")) {
+                update.setString(1, status);
+                update.setLong(2, order[0]);
+                try (ResultSet rs = update.executeQuery()) {
+                    userId = rs.next() ? rs.getLong(1) : null;
+                }
+            }
+            if (userId == null) {
+                return 0;
+            }
+            insertEvent(connection, order[0], userId, "status:" + status, null);
+            return 1;
+        });
+        if (updated == 0 || next == STATUSES.length - 1) {
+            openOrders.remove(index);
+        } else {
+            order[1] = next;
+        }
+        return updated > 0;
+    }
+
+    /**
+     * 查询一个用户的订单及每个订单的事件数（走订单和事件上的复合索引）
+     */
+    public List<Map<String, Object>> queryOrderHistory() {
+        long userId = 1 + (long) (random.nextDouble() * Math.max(1, maxUserId));
+        return jdbcTemplate.queryForList("""
+            SELECT o.id, o.status, o.amount_cents, COUNT(e.id) AS events
+            FROM orders o LEFT JOIN order_events e ON e.order_id = o.id
+            WHERE o.user_id = (SELECT id FROM users WHERE id >= ? ORDER BY id LIMIT 1)
+            GROUP BY o.id ORDER BY o.id DESC LIMIT 20
+            """, userId);
+    }
+
+    /**
+     * 订单工作负载阶段：在给定时间内混合执行下单、推进状态和历史查询，忙错误时回滚并重试整个事务
+     *
+     * @return 执行的写事务数
+     */
+    public int runOrderWorkload(String processName, long durationMillis) {
+        long endTime = System.currentTimeMillis() + durationMillis;
+        Integer users = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Integer.class);
+        maxUserId = users != null ? users : 0;
+        int placed = 0;
+        int advanced = 0;
+        int queries = 0;
+        int busyRetries = 0;
+
+        try {
+            while (System.currentTimeMillis() < endTime) {
+                if (writerPacing != null && !writerPacing.awaitActive(endTime)) {
+                    break;
+                }
+                int choice = random.nextInt(10);
+                if (choice == 0) {
+                    if (contentionTracer != null) {
+                        contentionTracer.begin("order-query");
+                    }
+                    RuntimeException queryError = null;
+                    try {
+                        queryOrderHistory();
+                    } catch (RuntimeException e) {
+                        queryError = e;
+                        throw e;
+                    } finally {
+                        if (contentionTracer != null) {
+                            contentionTracer.end(queryError);
+                        }
+                    }
+                    queries++;
+                    continue;
+                }
+                boolean place = choice <= 5 || openOrders.isEmpty();
+                for (int attempt = 1; ; attempt++) {
+                    long start = System.nanoTime();
+                    if (contentionTracer != null) {
+                        contentionTracer.begin(place ? "order-place" : "order-advance");
+                    }
+                    try {
+                        if (place) {
+                            placeOrder(processName);
+                            placed++;
+                        } else {
+                            advanceOrder();
+                            advanced++;
+                        }
+                        if (contentionTracer != null) {
+                            contentionTracer.end(null);
+                        }
+                        if (writerMetrics != null) {
+                            writerMetrics.recordOperation(System.nanoTime() - start);
+                        }
+                        break;
+                    } catch (RuntimeException e) {
+                        if (contentionTracer != null) {
+                            contentionTracer.end(e);
+                        }
+                        if (writerMetrics != null) {
+                            writerMetrics.recordError(e);
+                        }
+                        if (!NfsTestException.isBusy(e) || attempt >= MAX_BUSY_RETRIES) {
+                            throw e;
+                        }
+                        busyRetries++;
+                        Thread.sleep(1 + ThreadLocalRandom.current().nextInt(3));
+                    }
+                }
+                if (writerPacing != null) {
+                    writerPacing.pause();
+                } else {
+                    Thread.sleep(1 + ThreadLocalRandom.current().nextInt(3));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Process {} order workload failed after {} orders, {} status updates",
+                         processName, placed, advanced, e);
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected during order workload", e);
+            }
+            throw new NfsTestException("Order workload failed for process " + processName, e);
+        }
+        logger.info("Process {} placed {} orders, advanced {}, ran {} history queries ({} busy retries) in {} ms",
+                    processName, placed, advanced, queries, busyRetries, durationMillis);
+        return placed + advanced;
+    }
+
+    private interface TransactionBody<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * 在同一个连接上开启外键并执行BEGIN IMMEDIATE事务（直接获取写锁，避免读锁升级时的死锁式忙错误）
+     */
+    private <T> T inTransaction(TransactionBody<T> body) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA foreign_keys = ON");
+                statement.execute("BEGIN IMMEDIATE");
+                try {
+                    T result = body.apply(connection);
+                    statement.execute("COMMIT");
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    try {
+                        statement.execute("ROLLBACK");
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private static void insertEvent(Connection connection, long orderId, long userId, String type, String payload)
+            throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO order_events (order_id, user_id, type, payload) VALUES (?, ?, ?, ?)")) {
+            insert.setLong(1, orderId);
+            insert.setLong(2, userId);
+            insert.setString(3, type);
+            insert.setString(4, payload);
+            insert.executeUpdate();
+        }
+    }
+
+    private static Long queryLong(Connection connection, String sql, Object... params) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long value = rs.getLong(1);
+                return rs.wasNull() ? null : value;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 最终校验 - 测试结束后的综合健康检查，各个步骤在独立的只读连接上并行执行并分别计时：
+ * 每张表（连同它的索引）一次integrity_check、整个文件的页级统计、必需字段检查和每个写入者的序号校验
+ *
+ * SQLite只能把integrity_check限定到单张表及其索引，限定后不再检查freelist和未被引用的页，
+ * 这部分由直接读取文件的页扫描器补上；线程数为1或内存数据库时仍执行一次完整的integrity_check
+ */
+public class ParallelVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelVerifier.class);
+
+    private final String databasePath;
+    private final int threads;
+
+    public ParallelVerifier(String databasePath) {
+        this.databasePath = databasePath;
+        this.threads = Math.max(1, TestOptions.getVerifyThreads());
+    }
+
+    /**
+     * 执行全部校验，返回false表示发现连接、完整性或一致性问题
+     *
+     * @param committedSequences 子进程上报的已确认序号（写入者名称 -> 最大已确认序号）
+     */
+    public boolean verify(Map<String, Long> committedSequences) {
+        logger.info("Performing comprehensive database health check on {} thread(s)...", threads);
+        long start = System.nanoTime();
+
+        // 先用读写连接检查连接并读取schema：留下的热日志需要可写连接才能回滚，之后的只读连接才能打开
+        Step connection = new Step("connection", this::checkConnection);
+        connection.run();
+        if (!connection.passed) {
+            logger.error("Comprehensive health check: FAILED (connection: false)");
+            return false;
+        }
+
+        // 读取表和写入者列表同样可能碰到损坏的sqlite_master或索引，失败时按完整性失败处理而不是抛出
+        List<String> tables = new ArrayList<>();
+        Map<String, Long> writers = new LinkedHashMap<>();
+        SequenceVerifier sequenceVerifier = new SequenceVerifier(DatabaseConfig.createReadOnlyJdbcTemplate(databasePath));
+        Step discovery = new Step("schema discovery", () -> {
+            tables.addAll(findTables());
+            writers.putAll(sequenceVerifier.findWritersToVerify(committedSequences));
+            return true;
+        });
+        discovery.run();
+        if (!discovery.passed) {
+            logger.error("Comprehensive health check: FAILED (connection: true, integrity: false, "
+                         + "cannot read tables or writers)");
+            return false;
+        }
+
+        List<Step> steps = new ArrayList<>();
+        boolean fullIntegrityCheck = threads == 1 || DatabaseConfig.isInMemory(databasePath);
+        if (fullIntegrityCheck) {
+            steps.add(new Step("integrity_check", () -> checkIntegrity(null)));
+        } else {
+            for (String table : tables) {
+                steps.add(new Step("integrity_check(" + table + ")", () -> checkIntegrity(table)));
+            }
+            steps.add(new Step("page accounting", this::checkPageAccounting));
+        }
+        steps.add(new Step("required fields", this::checkRequiredFields));
+        if (tables.contains("orders")) {
+            steps.add(new Step("order totals", this::checkOrderTotals));
+            steps.add(new Step("order events", this::checkOrderEvents));
+            // 保留策略删除用户时不经过外键检查，此时悬空引用是预期的
+            if (!TestOptions.isMaintenanceEnabled()
+                || (TestOptions.getRetentionMaxRows() == 0 && TestOptions.getRetentionSeconds() == 0)) {
+                steps.add(new Step("foreign keys", this::checkForeignKeys));
+            }
+        }
+        for (String writer : writers.keySet()) {
+            steps.add(new Step("sequence " + writer, () -> sequenceVerifier.verifyWriter(writer, committedSequences)));
+        }
+
+        runAll(steps);
+
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        long stepMillis = connection.millis + discovery.millis;
+        boolean integrityOk = true;
+        boolean consistencyOk = true;
+        logger.info("=== Verification Steps ===");
+        for (Step step : steps) {
+            stepMillis += step.millis;
+            if (step.name.startsWith("integrity_check") || step.name.equals("page accounting")) {
+                integrityOk &= step.passed;
+            } else {
+                consistencyOk &= step.passed;
+            }
+            logger.info(String.format("  %-32s %-7s %8d ms", step.name, step.passed ? "PASSED" : "FAILED", step.millis));
+        }
+        logger.info("Verification took {} ms wall time, {} ms of step time on {} thread(s)", wallMillis, stepMillis,
+                    threads);
+
+        boolean overallHealthy = integrityOk && consistencyOk;
+        if (overallHealthy) {
+            logger.info("Comprehensive health check: PASSED");
+        } else {
+            logger.error("Comprehensive health check: FAILED (connection: true, integrity: {}, consistency: {})",
+                         integrityOk, consistencyOk);
+        }
+        return overallHealthy;
+    }
+
+    private void runAll(List<Step> steps) {
+        if (threads == 1) {
+            steps.forEach(Step::run);
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Verifier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Step step : steps) {
+                futures.add(executor.submit(step::run));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NfsTestException("Verification interrupted", e);
+        } catch (ExecutionException e) {
+            throw new NfsTestException("Verification step failed unexpectedly", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean checkConnection() {
+        JdbcTemplate jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sqlite_master", Integer.class);
+        return true;
+    }
+
+    private List<String> findTables() {
+        return DatabaseConfig.createReadOnlyJdbcTemplate(databasePath).queryForList(
+            "SELECT name FROM sqlite_master WHERE type = 'table' ORDER BY name", String.class);
+    }
+
+    /**
+     * table为null时检查整个数据库
+     */
+    private boolean checkIntegrity(String table) {
+        JfrEvents.IntegrityCheckEvent event = new JfrEvents.IntegrityCheckEvent();
+        event.begin();
+        String sql = table == null ? "PRAGMA integrity_check" : "PRAGMA integrity_check(\"" + table + "\")";
+        List<String> messages = DatabaseConfig.createReadOnlyJdbcTemplate(databasePath).queryForList(sql, String.class);
+        boolean isOk = messages.size() == 1 && "ok".equalsIgnoreCase(messages.get(0));
+        event.passed = isOk;
+        event.commit();
+        if (!isOk) {
+            logger.error("Database integrity check FAILED{}: {}", table == null ? "" : " for " + table, messages);
+        }
+        return isOk;
+    }
+
+    /**
+     * freelist和未被引用页的检查（限定表的integrity_check不做这部分）
+     */
+    private boolean checkPageAccounting() {
+        DatabaseForensics.ForensicReport report = new DatabaseForensics(databasePath).scan();
+        if (!report.isClean()) {
+            report.log();
+        }
+        return report.isClean();
+    }
+
+    private boolean checkRequiredFields() {
+        Integer nullNames = DatabaseConfig.createReadOnlyJdbcTemplate(databasePath).queryForObject(
+            "SELECT COUNT(*) FROM users WHERE name IS NULL", Integer.class);
+        if (nullNames != null && nullNames > 0) {
+            logger.error("Data consistency check FAILED: Found {} records with NULL names", nullNames);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * user_stats由下单事务UPSERT维护，与orders的聚合不一致说明跨表事务只落盘了一部分
+     */
+    private boolean checkOrderTotals() {
+        List<Map<String, Object>> mismatches = DatabaseConfig.createReadOnlyJdbcTemplate(databasePath).queryForList("""
+            SELECT s.user_id, s.order_count, s.total_cents, o.orders, o.total
+            FROM user_stats s
+            LEFT JOIN (SELECT user_id, COUNT(*) AS orders, SUM(amount_cents) AS total FROM orders GROUP BY user_id) o
+                ON o.user_id = s.user_id
+            WHERE o.orders IS NULL OR s.order_count != o.orders OR s.total_cents != o.total
+            UNION ALL
+            SELECT o.user_id, NULL, NULL, COUNT(*), SUM(o.amount_cents)
+            FROM orders o WHERE NOT EXISTS (SELECT 1 FROM user_stats s WHERE s.user_id = o.user_id)
+            GROUP BY o.user_id
+            LIMIT 20
+            """);
+        if (!mismatches.isEmpty()) {
+            logger.error("Data consistency check FAILED: user_stats disagrees with orders: {}", mismatches);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 每个订单恰好有一条created事件，item_added事件数等于item_count - 1
+     */
+    private boolean checkOrderEvents() {
+        List<Map<String, Object>> mismatches = DatabaseConfig.createReadOnlyJdbcTemplate(databasePath).queryForList("""
+            SELECT * FROM (
+                SELECT o.id, o.item_count,
+                       (SELECT COUNT(*) FROM order_events e WHERE e.order_id = o.id AND e.type = 'created') AS created,
+                       (SELECT COUNT(*) FROM order_events e WHERE e.order_id = o.id AND e.type = 'item_added') AS items
+                FROM orders o
+            )
+            WHERE created != 1 OR items != item_count - 1
+            LIMIT 20
+            """);
+        if (!mismatches.isEmpty()) {
+            logger.error("Data consistency check FAILED: orders with missing or extra events: {}", mismatches);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkForeignKeys() {
+        List<Map<String, Object>> violations = DatabaseConfig.createReadOnlyJdbcTemplate(databasePath)
+            .queryForList("PRAGMA foreign_key_check");
+        if (!violations.isEmpty()) {
+            logger.error("Data consistency check FAILED: {} foreign key violations, first: {}", violations.size(),
+                         violations.subList(0, Math.min(20, violations.size())));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 一个校验步骤及其结果和耗时，步骤抛出的异常按失败处理
+     */
+    private static class Step {
+        private final String name;
+        private final Callable<Boolean> check;
+        private volatile boolean passed;
+        private volatile long millis;
+
+        Step(String name, Callable<Boolean> check) {
+            this.name = name;
+            this.check = check;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            try {
+                passed = check.call();
+            } catch (Exception e) {
+                logger.error("Verification step {} failed", name, e);
+                passed = false;
+            }
+            millis = (System.nanoTime() - start) / 1_000_000;
+            logger.debug("Verification step {} finished in {} ms", name, millis);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 子进程资源采样 - 按固定间隔读取/proc/&lt;pid&gt;/stat、io、status（只在Linux上可用，不需要额外依赖），
+ * 把CPU时间、读写字节数和系统调用次数、RSS、线程数、上下文切换与同一区间的写入速率放在一起输出，
+ * 用来判断慢的子进程是CPU受限、阻塞在I/O上还是得不到调度
+ *
+ * 子进程的工作循环在Java主线程上执行（Java启动器创建的第二个名为java的线程，不是进程的首线程），
+ * 状态和上下文切换次数取自该线程的/proc/&lt;pid&gt;/task/&lt;tid&gt;，CPU时间、I/O计数和内存是整个进程的；
+ * 状态在每个区间内采样多次，统计处于D状态（不可中断的I/O等待）的比例
+ */
+public class ProcSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcSampler.class);
+    private static final double CLOCK_TICKS_PER_SECOND = 100.0; // USER_HZ，/proc中的时间单位
+    private static final int STATE_SAMPLES_PER_INTERVAL = 10;
+
+    private final MetricsCollector metricsCollector;
+    private final long intervalMillis;
+    private final Map<String, Child> children = new ConcurrentHashMap<>();
+    private final PrintWriter csv;
+    private Thread thread;
+
+    public ProcSampler(MetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+        this.intervalMillis = TestOptions.getProcSamplerIntervalMillis();
+        String csvPath = TestOptions.getProcSamplerCsv();
+        PrintWriter writer = null;
+        if (csvPath != null) {
+            try {
+                writer = new PrintWriter(new FileWriter(csvPath, StandardCharsets.UTF_8));
+                writer.println("time,process,ops_per_sec,cpu_pct,user_pct,sys_pct,read_bytes_per_sec,"
+                               + "write_bytes_per_sec,rchar_per_sec,wchar_per_sec,syscr_per_sec,syscw_per_sec,"
+                               + "rss_kb,threads,vol_ctxsw_per_sec,invol_ctxsw_per_sec,d_state_pct");
+            } catch (IOException e) {
+                logger.warn("Cannot write proc sampler CSV {}, continuing without it", csvPath, e);
+            }
+        }
+        this.csv = writer;
+    }
+
+    /**
+     * 当前系统是否提供/proc（非Linux系统上不采样）
+     */
+    public static boolean isSupported() {
+        return new File("/proc/self/stat").canRead();
+    }
+
+    public void register(String processName, long pid) {
+        children.put(processName, new Child(processName, pid));
+    }
+
+    /**
+     * 子进程的标准输出结束（正在退出）时调用：取最后一次采样补上最后一个区间，然后输出汇总，
+     * 需要在waitFor之前调用，进程被回收后/proc/&lt;pid&gt;随即消失
+     */
+    public void unregister(String processName) {
+        Child child = children.remove(processName);
+        if (child != null) {
+            child.sample();
+            child.logSummary();
+        }
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "ProcSampler");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Sampling child process resources from /proc every {} ms", intervalMillis);
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (String processName : children.keySet()) {
+            unregister(processName);
+        }
+        if (csv != null) {
+            csv.close();
+        }
+    }
+
+    private void run() {
+        long tickMillis = Math.max(1, intervalMillis / STATE_SAMPLES_PER_INTERVAL);
+        for (Child child : children.values()) {
+            child.sample();
+        }
+        int tick = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(tickMillis);
+                tick++;
+                boolean report = tick % STATE_SAMPLES_PER_INTERVAL == 0;
+                for (Child child : children.values()) {
+                    if (report) {
+                        child.sample();
+                    } else {
+                        child.sampleState();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * /proc中的一次读数
+     */
+    static class Reading {
+        long timeMillis;
+        char state;
+        long userTicks;
+        long systemTicks;
+        long blockIoDelayTicks;
+        long readChars;
+        long writeChars;
+        long readSyscalls;
+        long writeSyscalls;
+        long readBytes;
+        long writeBytes;
+        long rssKb;
+        long threads;
+        long voluntarySwitches;
+        long involuntarySwitches;
+
+        /**
+         * @param previous 上一次读数；进程正在退出、主线程已经结束时沿用其上下文切换次数，状态记为0（不计入状态采样）
+         */
+        static Reading read(long pid, long workerTid, Reading previous) throws IOException {
+            Reading reading = new Reading();
+            reading.timeMillis = System.currentTimeMillis();
+            Path directory = Paths.get("/proc", String.valueOf(pid));
+            Path worker = directory.resolve("task").resolve(String.valueOf(workerTid));
+            reading.parseStat(Files.readString(directory.resolve("stat")));
+            try {
+                for (String line : Files.readAllLines(directory.resolve("io"))) {
+                    reading.parseIo(line);
+                }
+            } catch (IOException e) {
+                // /proc/<pid>/io需要与目标进程相同的用户（或ptrace权限），读不到时只缺少I/O计数
+                logger.debug("Cannot read /proc/{}/io", pid, e);
+            }
+            for (String line : Files.readAllLines(directory.resolve("status"))) {
+                reading.parseStatus(line);
+            }
+            try {
+                reading.state = readState(pid, workerTid);
+                for (String line : Files.readAllLines(worker.resolve("status"))) {
+                    reading.parseSwitches(line);
+                }
+            } catch (NoSuchFileException e) {
+                if (previous == null) {
+                    throw e;
+                }
+                reading.state = 0;
+                reading.voluntarySwitches = previous.voluntarySwitches;
+                reading.involuntarySwitches = previous.involuntarySwitches;
+            }
+            return reading;
+        }
+
+        static char readState(long pid, long workerTid) throws IOException {
+            String stat = Files.readString(Paths.get("/proc", String.valueOf(pid), "task",
+                                                     String.valueOf(workerTid), "stat"));
+            return stat.charAt(stat.lastIndexOf(')') + 2);
+        }
+
+        /**
+         * 找到Java主线程：除首线程外线程号最小、名称为java的线程；找不到时退回首线程
+         */
+        static long findWorkerThread(long pid) {
+            long workerTid = pid;
+            File[] tasks = new File("/proc/" + pid + "/task").listFiles();
+            if (tasks == null) {
+                return workerTid;
+            }
+            for (File task : tasks) {
+                try {
+                    long tid = Long.parseLong(task.getName());
+                    if (tid != pid && (workerTid == pid || tid < workerTid)
+                        && "java".equals(Files.readString(task.toPath().resolve("comm")).trim())) {
+                        workerTid = tid;
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    // 线程已退出
+                }
+            }
+            return workerTid;
+        }
+
+        /**
+         * 进程名可能包含空格和括号，从最后一个')'之后开始按空格切分，第一个字段是状态（man proc中的第3个字段）
+         */
+        private void parseStat(String stat) {
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+            userTicks = Long.parseLong(fields[11]);   // 14 utime
+            systemTicks = Long.parseLong(fields[12]); // 15 stime
+            if (fields.length > 39) {
+                blockIoDelayTicks = Long.parseLong(fields[39]); // 42 delayacct_blkio_ticks
+            }
+        }
+
+        private void parseIo(String line) {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                return;
+            }
+            long value = Long.parseLong(line.substring(separator + 1).trim());
+            switch (line.substring(0, separator)) {
+                case "rchar": readChars = value; break;
+                case "wchar": writeChars = value; break;
+                case "syscr": readSyscalls = value; break;
+                case "syscw": writeSyscalls = value; break;
+                case "read_bytes": readBytes = value; break;
+                case "write_bytes": writeBytes = value; break;
+                default: break;
+            }
+        }
+
+        private void parseStatus(String line) {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                return;
+            }
+            String key = line.substring(0, separator);
+            String value = line.substring(separator + 1).trim();
+            switch (key) {
+                case "VmRSS": rssKb = Long.parseLong(value.split("\\s+")[0]); break;
+                case "Threads": threads = Long.parseLong(value); break;
+                default: break;
+            }
+        }
+
+        private void parseSwitches(String line) {
+            if (line.startsWith("voluntary_ctxt_switches:")) {
+                voluntarySwitches = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+                involuntarySwitches = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * 一个子进程的采样状态和全程累计
+     */
+    private class Child {
+        private final String processName;
+        private final long pid;
+        private long workerTid;
+        private Reading first;
+        private Reading last;
+        private int stateSamples;
+        private int ioWaitSamples;
+        private int totalStateSamples;
+        private int totalIoWaitSamples;
+        private int runnableSamples;
+        private double peakCpuPercent;
+        private long peakRssKb;
+
+        Child(String processName, long pid) {
+            this.processName = processName;
+            this.pid = pid;
+        }
+
+        synchronized void sampleState() {
+            try {
+                countState(Reading.readState(pid, workerTid()));
+            } catch (IOException | RuntimeException e) {
+                // 进程刚退出
+            }
+        }
+
+        /**
+         * 子进程刚启动时主线程可能还没创建，解析到首线程时下次再找
+         */
+        private long workerTid() {
+            if (workerTid == 0 || workerTid == pid) {
+                workerTid = Reading.findWorkerThread(pid);
+            }
+            return workerTid;
+        }
+
+        private void countState(char state) {
+            stateSamples++;
+            totalStateSamples++;
+            if (state == 'D') {
+                ioWaitSamples++;
+                totalIoWaitSamples++;
+            } else if (state == 'R') {
+                runnableSamples++;
+            }
+        }
+
+        synchronized void sample() {
+            Reading reading;
+            try {
+                reading = Reading.read(pid, workerTid(), last);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Cannot sample /proc/{} for {}", pid, processName, e);
+                return;
+            }
+            if (reading.state != 0) {
+                countState(reading.state);
+            }
+            if (first == null) {
+                first = reading;
+            } else {
+                report(last, reading);
+            }
+            last = reading;
+            peakRssKb = Math.max(peakRssKb, reading.rssKb);
+            stateSamples = 0;
+            ioWaitSamples = 0;
+        }
+
+        private void report(Reading from, Reading to) {
+            double seconds = Math.max(1, to.timeMillis - from.timeMillis) / 1000.0;
+            double userPercent = (to.userTicks - from.userTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+            double systemPercent = (to.systemTicks - from.systemTicks) / CLOCK_TICKS_PER_SECOND / seconds * 100;
+            double cpuPercent = userPercent + systemPercent;
+            peakCpuPercent = Math.max(peakCpuPercent, cpuPercent);
+            double opsPerSecond = opsPerSecond(from.timeMillis, to.timeMillis);
+            double ioWaitPercent = stateSamples == 0 ? 0 : ioWaitSamples * 100.0 / stateSamples;
+
+            logger.info("[{}] ops/s={} cpu={}% (user {}%, sys {}%) read={}/s write={}/s syscalls r={}/s w={}/s "
+                        + "rss={}MB threads={} ctxsw vol={}/s invol={}/s D-state={}%",
+                        processName, format(opsPerSecond), format(cpuPercent), format(userPercent),
+                        format(systemPercent), bytes((to.readBytes - from.readBytes) / seconds),
+                        bytes((to.writeBytes - from.writeBytes) / seconds),
+                        format((to.readSyscalls - from.readSyscalls) / seconds),
+                        format((to.writeSyscalls - from.writeSyscalls) / seconds),
+                        to.rssKb / 1024, to.threads,
+                        format((to.voluntarySwitches - from.voluntarySwitches) / seconds),
+                        format((to.involuntarySwitches - from.involuntarySwitches) / seconds),
+                        format(ioWaitPercent));
+            if (csv != null) {
+                synchronized (csv) {
+                    csv.printf("%d,%s,%.1f,%.1f,%.1f,%.1f,%.0f,%.0f,%.0f,%.0f,%.1f,%.1f,%d,%d,%.1f,%.1f,%.1f%n",
+                               to.timeMillis, processName, opsPerSecond, cpuPercent, userPercent, systemPercent,
+                               (to.readBytes - from.readBytes) / seconds, (to.writeBytes - from.writeBytes) / seconds,
+                               (to.readChars - from.readChars) / seconds, (to.writeChars - from.writeChars) / seconds,
+                               (to.readSyscalls - from.readSyscalls) / seconds,
+                               (to.writeSyscalls - from.writeSyscalls) / seconds,
+                               to.rssKb, to.threads,
+                               (to.voluntarySwitches - from.voluntarySwitches) / seconds,
+                               (to.involuntarySwitches - from.involuntarySwitches) / seconds, ioWaitPercent);
+                    csv.flush();
+                }
+            }
+        }
+
+        /**
+         * 同一时间段内该子进程上报的写入速率（按结束时间落在区间内的指标快照计算）
+         */
+        private double opsPerSecond(long fromMillis, long toMillis) {
+            long operations = 0;
+            long coveredMillis = 0;
+            List<MetricsSnapshot> snapshots = metricsCollector.getSnapshotsSince(fromMillis);
+            for (MetricsSnapshot snapshot : snapshots) {
+                if (processName.equals(snapshot.getProcessName()) && snapshot.getEndMillis() <= toMillis) {
+                    operations += snapshot.getOperations();
+                    coveredMillis += Math.max(1, snapshot.getEndMillis() - snapshot.getStartMillis());
+                }
+            }
+            return coveredMillis == 0 ? 0 : operations * 1000.0 / coveredMillis;
+        }
+
+        /**
+         * 全程汇总和瓶颈提示：CPU接近一个核心为CPU受限；D状态比例高为I/O等待；
+         * 可运行却经常被抢占（非自愿切换多）为调度不足；否则多半在等锁或休眠
+         */
+        synchronized void logSummary() {
+            if (first == null || last == null || last == first) {
+                return;
+            }
+            double seconds = Math.max(1, last.timeMillis - first.timeMillis) / 1000.0;
+            double cpuPercent = (last.userTicks + last.systemTicks - first.userTicks - first.systemTicks)
+                                / CLOCK_TICKS_PER_SECOND / seconds * 100;
+            double ioWaitPercent = totalStateSamples == 0 ? 0 : totalIoWaitSamples * 100.0 / totalStateSamples;
+            double runnablePercent = totalStateSamples == 0 ? 0 : runnableSamples * 100.0 / totalStateSamples;
+            double involuntaryPerSecond = (last.involuntarySwitches - first.involuntarySwitches) / seconds;
+            double voluntaryPerSecond = (last.voluntarySwitches - first.voluntarySwitches) / seconds;
+
+            String hint;
+            if (cpuPercent >= 80) {
+                hint = "CPU-bound";
+            } else if (ioWaitPercent >= 20 || last.blockIoDelayTicks - first.blockIoDelayTicks
+                                               > (long) (seconds * CLOCK_TICKS_PER_SECOND * 0.2)) {
+                hint = "I/O wait";
+            } else if (runnablePercent >= 20 && involuntaryPerSecond > voluntaryPerSecond) {
+                hint = "descheduled (runnable but preempted)";
+            } else {
+                hint = "mostly sleeping (lock waits / pacing)";
+            }
+            logger.info("[{}] /proc summary over {}s: ops/s={}, avg cpu={}% (peak {}%), read={}, write={}, "
+                        + "syscalls r={} w={}, peak rss={}MB, ctxsw vol={}/s invol={}/s, D-state={}%, running={}% -> {}",
+                        processName, format(seconds), format(opsPerSecond(first.timeMillis, last.timeMillis)),
+                        format(cpuPercent), format(peakCpuPercent), bytes(last.readBytes - first.readBytes),
+                        bytes(last.writeBytes - first.writeBytes), last.readSyscalls - first.readSyscalls,
+                        last.writeSyscalls - first.writeSyscalls, peakRssKb / 1024, format(voluntaryPerSecond),
+                        format(involuntaryPerSecond), format(ioWaitPercent), format(runnablePercent), hint);
+        }
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
+    }
+
+    private static String bytes(double value) {
+        if (value >= 1024 * 1024) {
+            return String.format("%.1fMB", value / (1024 * 1024));
+        } else if (value >= 1024) {
+            return String.format("%.1fKB", value / 1024);
+        }
+        return String.format("%.0fB", value);
+    }
+}
@@ -0,0 +1,180 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 丢失写入校验器 - 按写入者逐个顺序扫描(writer, seq)索引，一次遍历列出序号缺口和重复
+ * 与子进程上报的已确认序号对比：确认过的序号不在表中即为丢失的写入
+ */
+public class SequenceVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceVerifier.class);
+    private static final int MAX_REPORTED_RANGES = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceVerifier(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 校验所有写入者，返回false表示发现丢失或重复的写入
+     *
+     * @param committedSequences 各写入者上报的已确认序号，可以为空（只检查表内部的缺口和重复）
+     */
+    public boolean verify(Map<String, Long> committedSequences) {
+        Map<String, Long> writers = findWritersToVerify(committedSequences);
+        boolean ok = true;
+        for (String writer : writers.keySet()) {
+            ok &= verifyWriter(writer, committedSequences);
+        }
+        logger.info("Sequence verification: {} writers, result {}", writers.size(), ok ? "PASSED" : "FAILED");
+        return ok;
+    }
+
+    /**
+     * 需要校验的写入者：上报过序号的和表中出现过的，值为已确认序号（未上报为0）
+     */
+    public Map<String, Long> findWritersToVerify(Map<String, Long> committedSequences) {
+        Map<String, Long> writers = new TreeMap<>(committedSequences);
+        for (String writer : findWriters()) {
+            writers.putIfAbsent(writer, 0L);
+        }
+        return writers;
+    }
+
+    /**
+     * 校验单个写入者并输出结果，不同写入者可以在不同连接上并行校验
+     */
+    public boolean verifyWriter(String writer, Map<String, Long> committedSequences) {
+        // 保留策略会删除每个写入者最旧的一段数据，此时从表中最小序号开始检查
+        boolean prefixDeleted = TestOptions.isMaintenanceEnabled()
+            && (TestOptions.getRetentionMaxRows() > 0 || TestOptions.getRetentionSeconds() > 0);
+        WriterResult result = scanWriter(writer, committedSequences.getOrDefault(writer, 0L), prefixDeleted);
+        return result.log(committedSequences.containsKey(writer));
+    }
+
+    /**
+     * 沿索引跳跃查找所有写入者，每个写入者只需一次索引查找，不扫描整张表
+     */
+    private List<String> findWriters() {
+        List<String> writers = new ArrayList<>();
+        String writer = jdbcTemplate.queryForObject("SELECT MIN(writer) FROM users WHERE writer IS NOT NULL", String.class);
+        while (writer != null) {
+            writers.add(writer);
+            writer = jdbcTemplate.queryForObject("SELECT MIN(writer) FROM users WHERE writer > ?", String.class, writer);
+        }
+        return writers;
+    }
+
+    private WriterResult scanWriter(String writer, long committed, boolean prefixDeleted) {
+        WriterResult result = new WriterResult(writer, committed, prefixDeleted);
+        jdbcTemplate.query("SELECT seq FROM users WHERE writer = ? ORDER BY seq",
+                           (RowCallbackHandler) rs -> result.accept(rs.getLong(1)), writer);
+        result.finish();
+        return result;
+    }
+
+    /**
+     * 单个写入者的流式扫描状态
+     */
+    private static class WriterResult {
+        private final String writer;
+        private final long committed;
+        private final boolean prefixDeleted;
+        private long rows;
+        private long first;
+        private long previous;
+        private long lostRows;
+        private long unacknowledgedGapRows;
+        private long duplicateRows;
+        private final List<String> lostRanges = new ArrayList<>();
+        private final List<String> duplicates = new ArrayList<>();
+
+        WriterResult(String writer, long committed, boolean prefixDeleted) {
+            this.writer = writer;
+            this.committed = committed;
+            this.prefixDeleted = prefixDeleted;
+        }
+
+        void accept(long seq) {
+            rows++;
+            if (rows == 1) {
+                first = seq;
+                previous = prefixDeleted ? seq - 1 : 0;
+            }
+            if (seq == previous) {
+                duplicateRows++;
+                if (duplicates.size() < MAX_REPORTED_RANGES) {
+                    duplicates.add(String.valueOf(seq));
+                }
+                return;
+            }
+            if (seq > previous + 1) {
+                gap(previous + 1, seq - 1);
+            }
+            previous = seq;
+        }
+
+        /**
+         * 已确认的序号之后没有数据：这一段是确认过却没有落盘的尾部
+         */
+        void finish() {
+            if (rows == 0 && prefixDeleted) {
+                // 保留策略可能已经删除了这个写入者的全部数据
+                return;
+            }
+            if (committed > previous) {
+                gap(previous + 1, committed);
+            }
+        }
+
+        private void gap(long from, long to) {
+            // 超过已确认序号的部分可能只是未提交的写入
+            long lostTo = Math.min(to, committed);
+            if (from <= lostTo) {
+                lostRows += lostTo - from + 1;
+                if (lostRanges.size() < MAX_REPORTED_RANGES) {
+                    lostRanges.add(from == lostTo ? String.valueOf(from) : from + "-" + lostTo);
+                }
+            }
+            if (to > committed) {
+                unacknowledgedGapRows += to - Math.max(from, committed + 1) + 1;
+            }
+        }
+
+        boolean log(boolean reported) {
+            if (!reported) {
+                logger.warn("Writer {} never reported a committed sequence, only checking for gaps/duplicates " +
+                            "inside its rows", writer);
+            }
+            if (unacknowledgedGapRows > 0) {
+                logger.warn("Writer {}: {} missing sequence numbers above the last acknowledged one ({})",
+                            writer, unacknowledgedGapRows, committed);
+            }
+            if (lostRows == 0 && duplicateRows == 0) {
+                logger.info("Writer {}: {} rows, seq {}..{}, acknowledged {}, no gaps or duplicates",
+                            writer, rows, rows > 0 ? first : 0, previous, committed);
+                return true;
+            }
+            if (lostRows > 0) {
+                logger.error("Writer {}: LOST {} acknowledged writes (acknowledged up to {}), missing seq {}{}",
+                             writer, lostRows, committed, String.join(", ", lostRanges),
+                             lostRanges.size() == MAX_REPORTED_RANGES ? ", ..." : "");
+            }
+            if (duplicateRows > 0) {
+                logger.error("Writer {}: {} DUPLICATE rows, seq {}{}", writer, duplicateRows,
+                             String.join(", ", duplicates), duplicates.size() == MAX_REPORTED_RANGES ? ", ..." : "");
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 存储后端对比 - 在多个目标（本地盘目录、/dev/shm、NFS挂载目录、共享内存数据库）上全速重放同一组轨迹，
+ * 输出并排的吞吐和延迟表；内存数据库的结果即SQLite自身的开销，其他目标与它的差距就是文件系统的开销
+ *
+ * 轨迹来自nfs.test.compare.trace.dir（一次实际运行的记录），没有指定时按工作负载种子生成：
+ * 每个进程每个周期一次查询、固定行数的插入和一次连接检查，每10个周期一次完整性检查
+ */
+public class StorageComparison {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageComparison.class);
+    private static final String MEMORY_TARGET = "memory";
+    private static final String DATABASE_FILE = "nfs-compare.db";
+
+    private final List<String> targets;
+    private final int processCount;
+
+    public StorageComparison(List<String> targets, int processCount) {
+        if (targets.isEmpty()) {
+            throw new NfsTestException("No comparison targets given");
+        }
+        this.targets = targets;
+        this.processCount = processCount;
+    }
+
+    /**
+     * 依次在每个目标上重放，单个目标失败不影响其他目标；全部成功时返回true
+     */
+    public boolean run() {
+        long seed = WorkloadSeed.resolve();
+        File generatedDirectory = null;
+        List<File> traces;
+        String traceDirectory = TestOptions.getCompareTraceDirectory();
+        if (traceDirectory != null) {
+            traces = TraceReplay.findTraces(traceDirectory);
+            logger.info("Comparing {} targets with {} recorded traces from {}", targets.size(), traces.size(),
+                        traceDirectory);
+        } else {
+            try {
+                generatedDirectory = Files.createTempDirectory("nfs-compare-").toFile();
+            } catch (IOException e) {
+                throw new NfsTestException("Failed to create directory for generated traces", e);
+            }
+            traces = generateTraces(generatedDirectory, seed);
+            logger.info("Comparing {} targets with {} generated traces ({} cycles x {} inserts per process)",
+                        targets.size(), traces.size(), TestOptions.getCompareCycles(),
+                        TestOptions.getCompareInsertsPerCycle());
+        }
+
+        List<TraceReplay.Summary> summaries = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        try {
+            for (String target : targets) {
+                String databasePath = null;
+                try {
+                    databasePath = toDatabasePath(target);
+                    // 上次对比残留的-wal/-shm会与新建的数据库文件不匹配
+                    deleteDatabaseFiles(databasePath);
+                    summaries.add(new TraceReplay(traces, true).run(databasePath));
+                } catch (RuntimeException e) {
+                    logger.error("Comparison target {} failed", target, e);
+                    failures.add(target);
+                } finally {
+                    if (databasePath != null) {
+                        deleteDatabaseFiles(databasePath);
+                    }
+                }
+            }
+        } finally {
+            if (generatedDirectory != null) {
+                deleteDirectory(generatedDirectory);
+            }
+        }
+
+        logTable(summaries);
+        for (String failure : failures) {
+            logger.error("Target {} did not complete", failure);
+        }
+        return failures.isEmpty() && summaries.stream().allMatch(TraceReplay.Summary::isSuccessful);
+    }
+
+    /**
+     * 目标是目录时在其中创建数据库文件，"memory"表示共享缓存的内存数据库
+     */
+    private static String toDatabasePath(String target) {
+        if (MEMORY_TARGET.equalsIgnoreCase(target)) {
+            return DatabaseConfig.MEMORY_PREFIX + "nfs-compare";
+        }
+        File directory = new File(target);
+        if (!directory.isDirectory()) {
+            throw new NfsTestException("Comparison target is not a directory: " + target);
+        }
+        return new File(directory, DATABASE_FILE).getPath();
+    }
+
+    /**
+     * 按种子生成每个进程的轨迹，同一种子和参数下生成的操作完全相同
+     */
+    private List<File> generateTraces(File directory, long seed) {
+        int cycles = TestOptions.getCompareCycles();
+        int insertsPerCycle = TestOptions.getCompareInsertsPerCycle();
+        List<File> traces = new ArrayList<>();
+        for (int i = 1; i <= processCount; i++) {
+            String processName = "ChildProcess-" + i;
+            File file = new File(directory, processName + OpTrace.FILE_SUFFIX);
+            Random random = WorkloadSeed.forProcess(processName);
+            OpTrace.Writer writer = new OpTrace.Writer(file, processName, seed);
+            long seq = 0;
+            for (int cycle = 1; cycle <= cycles; cycle++) {
+                int queryType = random.nextInt(3);
+                int minAge = queryType == 0 ? 20 + random.nextInt(30) : 0;
+                int maxAge = queryType == 0 ? minAge + random.nextInt(20) : 0;
+                writer.query(System.nanoTime(), OpTrace.OK, queryType, minAge, maxAge);
+                for (int index = 1; index <= insertsPerCycle; index++) {
+                    int age = 18 + random.nextInt(60);
+                    writer.insert(System.nanoTime(), OpTrace.OK, index, age, random.nextLong(), ++seq, 1);
+                }
+                writer.simple(OpTrace.HEALTH, System.nanoTime(), OpTrace.OK);
+                if (cycle % 10 == 0) {
+                    writer.simple(OpTrace.INTEGRITY, System.nanoTime(), OpTrace.OK);
+                }
+                writer.cycleEnd(cycle);
+            }
+            writer.close();
+            traces.add(file);
+        }
+        return traces;
+    }
+
+    private void logTable(List<TraceReplay.Summary> summaries) {
+        double best = summaries.stream().mapToDouble(TraceReplay.Summary::getOperationsPerSecond).max().orElse(0);
+        logger.info("=== Storage Comparison ===");
+        logger.info(String.format("%-32s %-9s %10s %10s %10s %10s %10s %8s %6s %7s %s",
+                                  "Target", "Mode", "Ops/s", "Inserts/s", "p50(us)", "p99(us)", "Max(us)",
+                                  "Busy", "Errors", "vs best", "Result"));
+        for (TraceReplay.Summary summary : summaries) {
+            long insertP50 = summary.getResults().stream()
+                                    .mapToLong(TraceReplay.ProcessResult::getInsertP50Micros).max().orElse(0);
+            logger.info(String.format("%-32s %-9s %10.1f %10.1f %10d %10d %10d %8d %6d %6.0f%% %s",
+                                      summary.getDatabasePath(), summary.isInProcess() ? "threads" : "processes",
+                                      summary.getOperationsPerSecond(), summary.getInsertsPerSecond(),
+                                      insertP50, summary.getWorstInsertP99Micros(), summary.getWorstInsertMaxMicros(),
+                                      summary.getTotalBusyRetries(), summary.getTotalErrors(),
+                                      best > 0 ? summary.getOperationsPerSecond() * 100 / best : 0,
+                                      summary.isSuccessful() ? "PASSED" : "FAILED"));
+        }
+        logger.info("Latency columns are per-insert (worst process); memory = SQLite without filesystem I/O");
+    }
+
+    /**
+     * 删除目标上的数据库文件及其-wal/-shm（内存数据库没有文件）
+     */
+    private static void deleteDatabaseFiles(String databasePath) {
+        if (DatabaseConfig.isInMemory(databasePath)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(new File(databasePath).toPath());
+            BulkSeeder.deleteSidecarFiles(databasePath);
+        } catch (IOException e) {
+            logger.warn("Failed to delete comparison database {}", databasePath, e);
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        if (!directory.delete()) {
+            directory.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 存储预检 - 在工作负载开始前用纯NIO测量数据库所在目录：fsync/fdatasync延迟分布、FileChannel.lock加锁解锁延迟、
+ * 4KB随机写读延迟，以及创建、重命名和重命名在目录列表中可见所需的时间，结果作为存储概况写入测试报告
+ *
+ * 每项测量以次数和时间两者先到为准，整个预检在慢挂载上也只需要几十秒；
+ * 随机读在同一客户端上多半命中页缓存，反映的是客户端缓存而不是服务器的读延迟；
+ * 重命名和列目录也在同一客户端上完成，测不到其他主机的属性/目录缓存（actimeo、lookupcache），那需要第二台主机
+ */
+public class StorageProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageProbe.class);
+    private static final int BLOCK_SIZE = 4096;
+    private static final int PROBE_FILE_BLOCKS = 256; // 1MB探测文件
+    private static final long LOCK_OFFSET = 0x40000000L; // 与SQLite的PENDING_BYTE相同的位置
+    private static final long VISIBILITY_TIMEOUT_MILLIS = 10000;
+    /**
+     * 目录列表的轮询间隔：NFS上每次列目录都是一次READDIR请求，不能空转
+     */
+    private static final long VISIBILITY_POLL_MILLIS = 1;
+
+    private final Path directory;
+    private final int iterations;
+    private final long stepTimeoutMillis;
+    private final Random random = new Random();
+
+    public StorageProbe(File directory) {
+        this.directory = directory.getAbsoluteFile().toPath();
+        this.iterations = TestOptions.getProbeIterations();
+        this.stepTimeoutMillis = TestOptions.getProbeStepTimeoutMillis();
+    }
+
+    /**
+     * 数据库文件所在的目录（没有父目录时为当前目录）
+     */
+    public static File directoryOf(String databasePath) {
+        File parent = new File(databasePath).getAbsoluteFile().getParentFile();
+        return parent != null ? parent : new File(".");
+    }
+
+    public StorageProfile run() {
+        StorageProfile profile = new StorageProfile(directory.toString());
+        long start = System.nanoTime();
+        logger.info("Probing storage at {} ({} iterations or {} ms per step)", directory, iterations,
+                    stepTimeoutMillis);
+        describeMount(profile);
+
+        Path probeFile = directory.resolve(".nfs-probe-" + ProcessHandle.current().pid() + ".dat");
+        try {
+            try (FileChannel channel = FileChannel.open(probeFile, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+                for (int i = 0; i < PROBE_FILE_BLOCKS; i++) {
+                    block.clear();
+                    channel.write(block, (long) i * BLOCK_SIZE);
+                }
+                channel.force(true);
+
+                measureSync(profile, channel, "fsync", true);
+                measureSync(profile, channel, "fdatasync", false);
+                measureLock(profile, channel);
+                measureRandomIo(profile, channel);
+            }
+            measureDirectoryOperations(profile);
+        } catch (IOException | RuntimeException e) {
+            profile.fail("probe", e);
+        } finally {
+            try {
+                Files.deleteIfExists(probeFile);
+            } catch (IOException e) {
+                logger.warn("Failed to delete probe file {}", probeFile, e);
+            }
+        }
+
+        profile.probeMillis = (System.nanoTime() - start) / 1_000_000;
+        profile.evaluate();
+        profile.log();
+        return profile;
+    }
+
+    /**
+     * 文件系统类型和挂载选项（取/proc/self/mounts中最长匹配的挂载点），用于发现nolock、actimeo等问题
+     */
+    private void describeMount(StorageProfile profile) {
+        try {
+            FileStore store = Files.getFileStore(directory);
+            profile.fileSystemType = store.type();
+        } catch (IOException e) {
+            profile.fileSystemType = "unknown";
+        }
+        Path mounts = Path.of("/proc/self/mounts");
+        if (!Files.isReadable(mounts)) {
+            return;
+        }
+        try {
+            String realPath = directory.toRealPath().toString();
+            int bestLength = -1;
+            for (String line : Files.readAllLines(mounts)) {
+                String[] fields = line.split(" ");
+                if (fields.length < 4) {
+                    continue;
+                }
+                String mountPoint = fields[1].replace("\\040", " ");
+                boolean matches = realPath.equals(mountPoint) || mountPoint.equals("/")
+                                  || realPath.startsWith(mountPoint + "/");
+                if (matches && mountPoint.length() > bestLength) {
+                    bestLength = mountPoint.length();
+                    profile.mountSource = fields[0];
+                    profile.mountPoint = mountPoint;
+                    profile.mountOptions = fields[3];
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Cannot read mount table", e);
+        }
+    }
+
+    /**
+     * 每次先写一个块制造脏页再强制刷盘，只计刷盘的时间；force(false)在Linux上即fdatasync
+     */
+    private void measureSync(StorageProfile profile, FileChannel channel, String name, boolean metadata)
+            throws IOException {
+        LatencyHistogram histogram = profile.histogram(name);
+        ByteBuffer block = randomBlock();
+        long deadline = System.currentTimeMillis() + stepTimeoutMillis;
+        for (int i = 0; i < iterations && System.currentTimeMillis() < deadline; i++) {
+            block.clear();
+            channel.write(block, randomOffset());
+            long start = System.nanoTime();
+            channel.force(metadata);
+            histogram.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在SQLite加锁使用的字节位置加排他锁再释放；不支持锁（例如nolock挂载）时记录失败
+     */
+    private void measureLock(StorageProfile profile, FileChannel channel) {
+        LatencyHistogram acquire = profile.histogram("lock acquire");
+        LatencyHistogram release = profile.histogram("lock release");
+        long deadline = System.currentTimeMillis() + stepTimeoutMillis;
+        try {
+            for (int i = 0; i < iterations && System.currentTimeMillis() < deadline; i++) {
+                long start = System.nanoTime();
+                FileLock lock = channel.lock(LOCK_OFFSET, 1, false);
+                long acquired = System.nanoTime();
+                lock.release();
+                long released = System.nanoTime();
+                acquire.recordNanos(acquired - start);
+                release.recordNanos(released - acquired);
+            }
+        } catch (IOException | RuntimeException e) {
+            profile.fail("lock", e);
+        }
+    }
+
+    private void measureRandomIo(StorageProfile profile, FileChannel channel) throws IOException {
+        LatencyHistogram writes = profile.histogram("4KB random write");
+        LatencyHistogram reads = profile.histogram("4KB random read");
+        ByteBuffer block = randomBlock();
+        long deadline = System.currentTimeMillis() + stepTimeoutMillis;
+        for (int i = 0; i < iterations && System.currentTimeMillis() < deadline; i++) {
+            block.clear();
+            long start = System.nanoTime();
+            channel.write(block, randomOffset());
+            writes.recordNanos(System.nanoTime() - start);
+        }
+        channel.force(false);
+        deadline = System.currentTimeMillis() + stepTimeoutMillis;
+        for (int i = 0; i < iterations && System.currentTimeMillis() < deadline; i++) {
+            block.clear();
+            long start = System.nanoTime();
+            channel.read(block, randomOffset());
+            reads.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 创建新文件、原子重命名，再轮询目录列表直到新名称出现且旧名称消失
+     * 重命名的客户端自己列目录，记录的是同一客户端上的延迟（本地的目录缓存会立即更新），不代表其他主机何时可见
+     */
+    private void measureDirectoryOperations(StorageProfile profile) throws IOException {
+        LatencyHistogram create = profile.histogram("create");
+        LatencyHistogram rename = profile.histogram("rename");
+        LatencyHistogram visible = profile.histogram("rename listed");
+        LatencyHistogram delete = profile.histogram("delete");
+        String prefix = ".nfs-probe-" + ProcessHandle.current().pid() + "-";
+        long deadline = System.currentTimeMillis() + stepTimeoutMillis;
+        for (int i = 0; i < iterations && System.currentTimeMillis() < deadline; i++) {
+            Path created = directory.resolve(prefix + i + ".tmp");
+            Path renamed = directory.resolve(prefix + i + ".renamed");
+            try {
+                long start = System.nanoTime();
+                Files.createFile(created);
+                long createdAt = System.nanoTime();
+                Files.move(created, renamed, StandardCopyOption.ATOMIC_MOVE);
+                long renamedAt = System.nanoTime();
+                create.recordNanos(createdAt - start);
+                rename.recordNanos(renamedAt - createdAt);
+
+                long visibleDeadline = System.currentTimeMillis() + VISIBILITY_TIMEOUT_MILLIS;
+                while (true) {
+                    List<String> names = Arrays.asList(listNames());
+                    if (names.contains(renamed.getFileName().toString())
+                        && !names.contains(created.getFileName().toString())) {
+                        visible.recordNanos(System.nanoTime() - createdAt);
+                        break;
+                    }
+                    if (System.currentTimeMillis() > visibleDeadline) {
+                        profile.warnings.add("Renamed file not visible in directory listing after "
+                                             + VISIBILITY_TIMEOUT_MILLIS + " ms");
+                        break;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(VISIBILITY_POLL_MILLIS));
+                }
+
+                start = System.nanoTime();
+                Files.delete(renamed);
+                delete.recordNanos(System.nanoTime() - start);
+            } finally {
+                Files.deleteIfExists(created);
+                Files.deleteIfExists(renamed);
+            }
+        }
+    }
+
+    private String[] listNames() {
+        String[] names = directory.toFile().list();
+        return names != null ? names : new String[0];
+    }
+
+    private ByteBuffer randomBlock() {
+        byte[] bytes = new byte[BLOCK_SIZE];
+        random.nextBytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private long randomOffset() {
+        return (long) random.nextInt(PROBE_FILE_BLOCKS) * BLOCK_SIZE;
+    }
+
+    /**
+     * 存储概况：各项延迟分布、挂载信息和根据结果给出的提示
+     */
+    public static class StorageProfile {
+        private final String directory;
+        private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        private final Map<String, String> failures = new LinkedHashMap<>();
+        private final List<String> warnings = new ArrayList<>();
+        private String fileSystemType = "unknown";
+        private String mountSource;
+        private String mountPoint;
+        private String mountOptions;
+        private long probeMillis;
+
+        StorageProfile(String directory) {
+            this.directory = directory;
+        }
+
+        LatencyHistogram histogram(String name) {
+            return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+        }
+
+        void fail(String step, Exception e) {
+            failures.put(step, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+
+        /**
+         * 单个步骤的百分位延迟（微秒），没有测到时返回-1
+         */
+        public long getPercentileMicros(String name, double percentile) {
+            LatencyHistogram histogram = histograms.get(name);
+            return histogram == null || histogram.getCount() == 0 ? -1 : histogram.getPercentileMicros(percentile);
+        }
+
+        /**
+         * 加锁失败说明多进程无法协调写入，在这样的存储上测试只会得到损坏
+         */
+        public boolean isUsable() {
+            return !failures.containsKey("lock") && !failures.containsKey("probe");
+        }
+
+        /**
+         * 根据测量结果给出提示，阈值是经验值
+         */
+        void evaluate() {
+            if (failures.containsKey("lock")) {
+                warnings.add("File locking failed (" + failures.get("lock")
+                             + "): SQLite cannot coordinate writers here, expect corruption");
+            }
+            if (mountOptions != null && (mountOptions.contains("nolock") || mountOptions.contains("local_lock=all"))) {
+                warnings.add("Mount option " + (mountOptions.contains("nolock") ? "nolock" : "local_lock=all")
+                             + ": locks are not visible to other hosts");
+            }
+            long fsyncP50 = getPercentileMicros("fsync", 50);
+            long fsyncP99 = getPercentileMicros("fsync", 99);
+            if (fsyncP50 >= 0 && fsyncP50 < 20) {
+                warnings.add("fsync p50 " + fsyncP50 + "us is too fast for stable storage: "
+                             + "writes are probably cached (async export / write-back cache), not durable");
+            }
+            if (fsyncP99 > 50_000) {
+                warnings.add("fsync p99 " + fsyncP99 / 1000 + "ms: with synchronous=FULL every commit waits at least this long in the tail");
+            }
+            long lockP99 = getPercentileMicros("lock acquire", 99);
+            if (lockP99 > 10_000) {
+                warnings.add("Lock acquire p99 " + lockP99 / 1000 + "ms: each transaction takes several locks, "
+                             + "lock round trips will dominate");
+            }
+        }
+
+        /**
+         * 按中位数估算单个写入者的提交上限：测试使用WAL和synchronous=OFF，一次提交大约2次加解锁、不需要fsync；
+         * withSync为true时按synchronous=FULL再加上每次提交一次WAL的fsync
+         */
+        public double getEstimatedCommitsPerSecond(boolean withSync) {
+            long fsync = getPercentileMicros("fsync", 50);
+            long acquire = getPercentileMicros("lock acquire", 50);
+            long release = getPercentileMicros("lock release", 50);
+            if (fsync < 0 || acquire < 0 || release < 0) {
+                return 0;
+            }
+            return 1_000_000.0 / Math.max(1, 2 * (acquire + release) + (withSync ? fsync : 0));
+        }
+
+        public void log() {
+            logger.info("=== Storage Profile: {} ===", directory);
+            logger.info("Filesystem: {}{}", fileSystemType,
+                        mountPoint != null ? " (" + mountSource + " on " + mountPoint + ", " + mountOptions + ")" : "");
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                if (entry.getValue().getCount() > 0) {
+                    logger.info(String.format("  %-18s %s", entry.getKey(), entry.getValue().describe()));
+                }
+            }
+            for (Map.Entry<String, String> failure : failures.entrySet()) {
+                logger.error("  {} failed: {}", failure.getKey(), failure.getValue());
+            }
+            double commits = getEstimatedCommitsPerSecond(false);
+            if (commits > 0) {
+                logger.info(String.format("  Estimated commit ceiling per writer: %.0f/s as configured "
+                                          + "(WAL, synchronous=OFF), %.0f/s with synchronous=FULL",
+                                          commits, getEstimatedCommitsPerSecond(true)));
+            }
+            for (String warning : warnings) {
+                logger.warn("  {}", warning);
+            }
+            logger.info("Storage probe took {} ms", probeMillis);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 扩展测试选项 - 通过JVM系统属性(-Dnfs.test.xxx=...)配置
+ * 位置参数保持不变，所有新增功能的开关和参数都集中在这里读取
+ */
+public final class TestOptions {
+
+    public static final String PREFIX = "nfs.test.";
+
+    public static final int DEFAULT_INITIAL_USER_COUNT = 20;
+
+    private TestOptions() {
+    }
+
+    // ---------- 初始数据 / 批量装载 ----------
+
+    /**
+     * 初始数据行数，默认20行
+     */
+    public static long getSeedRows() {
+        return getLong("seed.rows", DEFAULT_INITIAL_USER_COUNT);
+    }
+
+    /**
+     * 是否使用批量装载器：显式指定了行数或克隆文件时启用
+     */
+    public static boolean isBulkSeedEnabled() {
+        return isSet("seed.rows") || getSeedCloneFile() != null;
+    }
+
+    /**
+     * 每个事务提交的行数
+     */
+    public static int getSeedTransactionRows() {
+        return getInt("seed.transaction.rows", 200000);
+    }
+
+    /**
+     * 每条多行INSERT语句包含的行数
+     */
+    public static int getSeedRowsPerStatement() {
+        return getInt("seed.statement.rows", 200);
+    }
+
+    /**
+     * 二级索引创建时机：none / eager / deferred
+     */
+    public static String getSeedIndexMode() {
+        return getString("seed.index.mode", "none");
+    }
+
+    /**
+     * 预制种子文件路径：存在则直接克隆，不存在则生成后保存到该路径
+     */
+    public static String getSeedCloneFile() {
+        return getString("seed.clone.file", null);
+    }
+
+    // ---------- 指标 / 后台维护 ----------
+
+    /**
+     * 子进程上报写入指标的间隔，0表示不上报
+     */
+    public static long getMetricsIntervalMillis() {
+        return getLong("metrics.interval.ms", 1000);
+    }
+
+    public static boolean isMaintenanceEnabled() {
+        return getBoolean("maintenance.enabled", false);
+    }
+
+    /**
+     * 保留的最新行数，0表示不按行数清理
+     */
+    public static long getRetentionMaxRows() {
+        return getLong("retention.max.rows", 0);
+    }
+
+    /**
+     * 保留的时间窗口（秒），0表示不按时间清理
+     */
+    public static long getRetentionSeconds() {
+        return getLong("retention.seconds", 0);
+    }
+
+    public static long getMaintenanceIntervalMillis() {
+        return getLong("maintenance.interval.ms", 5000);
+    }
+
+    public static int getMaintenanceDeleteBatch() {
+        return getInt("maintenance.delete.batch", 500);
+    }
+
+    public static long getMaintenanceBatchPauseMillis() {
+        return getLong("maintenance.batch.pause.ms", 10);
+    }
+
+    /**
+     * 每次incremental_vacuum(N)回收的页数
+     */
+    public static int getVacuumPagesPerStep() {
+        return getInt("vacuum.pages.per.step", 256);
+    }
+
+    /**
+     * 每轮维护最多执行的incremental_vacuum次数
+     */
+    public static int getVacuumStepsPerRound() {
+        return getInt("vacuum.steps.per.round", 8);
+    }
+
+    // ---------- 在线备份 ----------
+
+    public static boolean isBackupEnabled() {
+        return getBoolean("backup.enabled", false);
+    }
+
+    /**
+     * 备份目标目录，默认使用本地临时目录
+     */
+    public static String getBackupDirectory() {
+        return getString("backup.dir", System.getProperty("java.io.tmpdir"));
+    }
+
+    public static int getBackupPagesPerStep() {
+        return getInt("backup.pages.per.step", 100);
+    }
+
+    /**
+     * 两步之间的休眠时间（限速）
+     */
+    public static long getBackupStepSleepMillis() {
+        return getLong("backup.step.sleep.ms", 10);
+    }
+
+    /**
+     * 源库忙时每次重试前的等待时间和最大重试次数
+     */
+    public static int getBackupBusySleepMillis() {
+        return getInt("backup.busy.sleep.ms", 100);
+    }
+
+    public static int getBackupBusyRetries() {
+        return getInt("backup.busy.retries", 50);
+    }
+
+    /**
+     * 一次备份中允许的重新开始次数，超过后剩余部分在同一个读事务中复制（与一步复制完全库相同，不会再重新开始）
+     */
+    public static int getBackupMaxRestarts() {
+        return getInt("backup.max.restarts", 20);
+    }
+
+    public static long getBackupDelayMillis() {
+        return getLong("backup.delay.ms", 5000);
+    }
+
+    /**
+     * 两次备份之间的间隔，0表示只备份一次
+     */
+    public static long getBackupIntervalMillis() {
+        return getLong("backup.interval.ms", 0);
+    }
+
+    public static boolean isBackupVerifyEnabled() {
+        return getBoolean("backup.verify", true);
+    }
+
+    // ---------- 损坏取证 ----------
+
+    /**
+     * 检测到损坏时是否自动执行页级取证扫描
+     */
+    public static boolean isForensicsEnabled() {
+        return getBoolean("forensics.enabled", true);
+    }
+
+    /**
+     * 报告中列出的损坏页/未引用页的最大条数
+     */
+    public static int getForensicsMaxIssues() {
+        return getInt("forensics.max.issues", 100);
+    }
+
+    // ---------- WAL实时监控 ----------
+
+    public static boolean isWalMonitorEnabled() {
+        return getBoolean("wal.monitor.enabled", true);
+    }
+
+    public static long getWalMonitorPollMillis() {
+        return getLong("wal.monitor.poll.ms", 200);
+    }
+
+    /**
+     * 校验失败的帧需要连续多少次轮询不变才认定为撕裂帧（避免把正在写入的帧误报）
+     */
+    public static int getWalMonitorConfirmPolls() {
+        return getInt("wal.monitor.confirm.polls", 5);
+    }
+
+    public static long getWalMonitorReportMillis() {
+        return getLong("wal.monitor.report.ms", 30000);
+    }
+
+    // ---------- 自适应并发 ----------
+
+    /**
+     * 自适应模式：主进程按忙错误率和p99延迟动态调整活动写入者数量和写入间隔，子进程数量参数作为上限
+     */
+    public static boolean isAdaptiveEnabled() {
+        return getBoolean("adaptive.enabled", false);
+    }
+
+    public static long getAdaptiveIntervalMillis() {
+        return getLong("adaptive.interval.ms", 5000);
+    }
+
+    /**
+     * 单次写入（自动提交）的p99延迟上限
+     */
+    public static long getAdaptiveSloP99Millis() {
+        return getLong("adaptive.slo.p99.ms", 50);
+    }
+
+    /**
+     * 允许的忙错误比例（忙错误数 / 写入尝试数）
+     */
+    public static double getAdaptiveMaxBusyRate() {
+        return getDouble("adaptive.max.busy.rate", 0.01);
+    }
+
+    public static double getAdaptiveInitialRate() {
+        return getDouble("adaptive.initial.rate", 100);
+    }
+
+    /**
+     * 每个控制周期未超限时目标总吞吐的加性增量
+     */
+    public static double getAdaptiveRateStep() {
+        return getDouble("adaptive.rate.step", 50);
+    }
+
+    /**
+     * 超限时目标总吞吐的乘性减小系数
+     */
+    public static double getAdaptiveDecreaseFactor() {
+        return getDouble("adaptive.decrease.factor", 0.5);
+    }
+
+    /**
+     * 单个写入者的目标速率上限，超过后增加活动写入者
+     */
+    public static double getAdaptiveWriterMaxRate() {
+        return getDouble("adaptive.writer.max.rate", 300);
+    }
+
+    // ---------- JFR记录 ----------
+
+    /**
+     * 为每个子进程启动JFR记录，测试结束后由主进程合并
+     */
+    public static boolean isJfrEnabled() {
+        return getBoolean("jfr.enabled", false);
+    }
+
+    public static String getJfrDirectory() {
+        return getString("jfr.dir", "logs/jfr");
+    }
+
+    /**
+     * JFR配置：default（开销约1%）或profile（更详细），也可以是.jfc文件路径
+     */
+    public static String getJfrSettings() {
+        return getString("jfr.settings", "default");
+    }
+
+    // ---------- 多机代理 ----------
+
+    /**
+     * 代理地址列表（host:port，逗号分隔）；设置后主进程作为协调者，由各代理在本机启动子进程
+     */
+    public static List<String> getAgents() {
+        List<String> agents = new ArrayList<>();
+        String value = getString("agents", null);
+        if (value != null) {
+            for (String address : value.split(",")) {
+                if (!address.isBlank()) {
+                    agents.add(address.trim());
+                }
+            }
+        }
+        return agents;
+    }
+
+    /**
+     * 代理监听的地址，默认只监听本机回环地址；多机测试时设为本机在测试网络上的地址（或0.0.0.0）
+     * 代理协议没有认证，只应在可信的测试网络上监听
+     */
+    public static String getAgentBindAddress() {
+        return getString("agent.bind", "127.0.0.1");
+    }
+
+    // ---------- 可重现工作负载 ----------
+
+    /**
+     * 工作负载基础种子，未设置时返回null，由主进程随机生成并记录在日志中
+     */
+    public static Long getWorkloadSeed() {
+        return isSet("workload.seed") ? getLong("workload.seed", 0) : null;
+    }
+
+    /**
+     * 每个子进程把执行的操作写入二进制轨迹文件，可用--replay重放
+     */
+    public static boolean isTraceEnabled() {
+        return getBoolean("trace.enabled", false);
+    }
+
+    public static String getTraceDirectory() {
+        return getString("trace.dir", "logs/trace");
+    }
+
+    // ---------- 存储后端对比 ----------
+
+    /**
+     * 用于对比的轨迹目录（一次实际运行的记录），未设置时按种子生成轨迹
+     */
+    public static String getCompareTraceDirectory() {
+        return getString("compare.trace.dir", null);
+    }
+
+    public static int getCompareCycles() {
+        return getInt("compare.cycles", 10);
+    }
+
+    public static int getCompareInsertsPerCycle() {
+        return getInt("compare.inserts.per.cycle", 500);
+    }
+
+    // ---------- 子进程资源采样 ----------
+
+    /**
+     * 从/proc采样每个子进程的CPU、I/O、内存和上下文切换（仅Linux）
+     */
+    public static boolean isProcSamplerEnabled() {
+        return getBoolean("proc.enabled", true);
+    }
+
+    public static long getProcSamplerIntervalMillis() {
+        return getLong("proc.interval.ms", 5000);
+    }
+
+    /**
+     * 采样时间序列的CSV输出文件，未设置时只写日志
+     */
+    public static String getProcSamplerCsv() {
+        return getString("proc.csv", null);
+    }
+
+    // ---------- 存储预检 ----------
+
+    /**
+     * 测试开始前测量数据库所在目录的fsync、加锁、小块读写和重命名延迟
+     */
+    public static boolean isProbeEnabled() {
+        return getBoolean("probe.enabled", true);
+    }
+
+    public static int getProbeIterations() {
+        return getInt("probe.iterations", 200);
+    }
+
+    /**
+     * 每个测量步骤的最长时间，慢存储上以时间为准
+     */
+    public static long getProbeStepTimeoutMillis() {
+        return getLong("probe.step.timeout.ms", 5000);
+    }
+
+    // ---------- 最终校验 ----------
+
+    /**
+     * 最终校验的并行线程数，1表示在一个线程上顺序执行完整的integrity_check
+     */
+    public static int getVerifyThreads() {
+        return getInt("verify.threads", Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // ---------- 扩展schema ----------
+
+    /**
+     * schema类型：basic只有users表；extended增加orders、order_events、user_stats和跨表事务工作负载
+     */
+    public static boolean isExtendedSchema() {
+        return "extended".equalsIgnoreCase(getString("schema", "basic"));
+    }
+
+    /**
+     * 每个周期中订单工作负载阶段的时长
+     */
+    public static long getOrderPhaseMillis() {
+        return getLong("orders.phase.ms", 2000);
+    }
+
+    public static int getOrderMaxItems() {
+        return getInt("orders.max.items", 3);
+    }
+
+    // ---------- 日志 ----------
+
+    /**
+     * 日志模式：classic（logback.xml，同步写入，子进程日志经stdout转发）或async（每个进程异步写自己的JSON行文件）
+     */
+    public static boolean isAsyncLogging() {
+        return "async".equalsIgnoreCase(getString("log.mode", "classic"));
+    }
+
+    public static String getLogDirectory() {
+        return getString("log.dir", "logs");
+    }
+
+    // ---------- 锁竞争追踪 ----------
+
+    /**
+     * 在子进程的每个连接上注册忙处理器和提交/更新监听器，按操作类型统计锁等待
+     */
+    public static boolean isContentionTracingEnabled() {
+        return getBoolean("contention.enabled", false);
+    }
+
+    // ---------- 工具方法 ----------
+
+    /**
+     * 把当前JVM上所有nfs.test.*属性转成子进程的-D参数
+     */
+    public static List<String> toJvmArguments() {
+        List<String> arguments = new ArrayList<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                arguments.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        Collections.sort(arguments);
+        return arguments;
+    }
+
+    static boolean isSet(String key) {
+        return System.getProperty(PREFIX + key) != null;
+    }
+
+    static String getString(String key, String defaultValue) {
+        String value = System.getProperty(PREFIX + key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new NfsTestException("Invalid integer option " + PREFIX + key + ": " + value, e);
+        }
+    }
+
+    static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new NfsTestException("Invalid long option " + PREFIX + key + ": " + value, e);
+        }
+    }
+
+    static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new NfsTestException("Invalid decimal option " + PREFIX + key + ": " + value, e);
+        }
+    }
+
+    static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,662 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 操作轨迹重放 - 每个轨迹文件由一个独立的Java进程重放（与原始运行一样是多进程并发），
+ * 可以按记录的节奏重放，也可以忽略间隔全速执行；结束后输出各进程的吞吐和延迟并做最终校验
+ *
+ * 重放进程把结果以单行文本发给协调进程，格式：
+ * @REPLAY process=name ops=N inserts=N skipped=N busy=N errors=N elapsed.ms=N insert.p50.us=N insert.p99.us=N ...
+ */
+public class TraceReplay {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceReplay.class);
+    public static final String LINE_PREFIX = "@REPLAY ";
+    private static final long READY_TIMEOUT_SECONDS = 60;
+    private static final int MAX_BUSY_RETRIES = 50;
+
+    private final List<File> traces;
+    private final boolean maxSpeed;
+    private final Map<String, Long> committedSequences = new ConcurrentHashMap<>();
+    private final Map<String, ProcessResult> results = new ConcurrentHashMap<>();
+    private long wallMillis;
+
+    public TraceReplay(List<File> traces, boolean maxSpeed) {
+        if (traces.isEmpty()) {
+            throw new NfsTestException("No operation traces to replay");
+        }
+        this.traces = traces;
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * 解析轨迹参数：单个.trace文件，或包含一次运行所有轨迹的目录
+     */
+    public static List<File> findTraces(String path) {
+        File file = new File(path);
+        List<File> traces = new ArrayList<>();
+        if (file.isDirectory()) {
+            File[] files = file.listFiles((dir, name) -> name.endsWith(OpTrace.FILE_SUFFIX));
+            if (files != null) {
+                Arrays.sort(files);
+                traces.addAll(Arrays.asList(files));
+            }
+        } else if (file.isFile()) {
+            traces.add(file);
+        } else {
+            throw new NfsTestException("Trace file or directory not found: " + path);
+        }
+        return traces;
+    }
+
+    // ---------- 协调进程 ----------
+
+    /**
+     * 在指定数据库上重放所有轨迹：初始化数据库 -> 启动重放进程 -> 同时开始 -> 汇总结果并校验
+     * 内存数据库不能跨进程共享，改为在本进程内每个轨迹一个线程重放
+     */
+    public Summary run(String databasePath) {
+        boolean inMemory = DatabaseConfig.isInMemory(databasePath);
+        logger.info("Replaying {} operation traces on {} ({}, {})", traces.size(), databasePath,
+                    maxSpeed ? "max speed" : "recorded pacing", inMemory ? "threads" : "processes");
+        useRecordedSeed();
+        results.clear();
+        committedSequences.clear();
+
+        // 内存数据库在最后一个连接关闭时销毁，重放期间保持一个连接
+        Connection keeper = null;
+        try {
+            if (inMemory) {
+                keeper = DatabaseConfig.createDataSource(databasePath).getConnection();
+            }
+            MainProcess.initializeDatabase(databasePath);
+            List<Integer> exitCodes = inMemory ? replayInThreads(databasePath) : replayInProcesses(databasePath);
+
+            boolean allSuccessful = exitCodes.stream().allMatch(code -> code == 0);
+            boolean corruption = exitCodes.contains(2);
+            boolean healthy = new ParallelVerifier(databasePath).verify(committedSequences);
+            Summary summary = new Summary(databasePath, inMemory, wallMillis, new ArrayList<>(results.values()),
+                                          allSuccessful && healthy, corruption || !healthy);
+            summary.log();
+            return summary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NfsTestException("Replay interrupted", e);
+        } catch (Exception e) {
+            if (e instanceof NfsTestException) {
+                throw (NfsTestException) e;
+            }
+            throw new NfsTestException("Replay failed", e);
+        } finally {
+            if (keeper != null) {
+                try {
+                    keeper.close();
+                } catch (SQLException e) {
+                    logger.warn("Failed to close in-memory database keeper connection", e);
+                }
+            }
+        }
+    }
+
+    private List<Integer> replayInProcesses(String databasePath) throws Exception {
+        File syncFile = File.createTempFile("nfs-replay-sync-", ".tmp");
+        CountDownLatch ready = new CountDownLatch(traces.size());
+        try {
+            List<CompletableFuture<Integer>> processes = new ArrayList<>();
+            for (File trace : traces) {
+                processes.add(startReplayProcess(trace, databasePath, syncFile, ready));
+            }
+            if (!ready.await(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Only {} of {} replay processes became ready",
+                            traces.size() - ready.getCount(), traces.size());
+            }
+            long startMillis = System.currentTimeMillis();
+            try (FileWriter writer = new FileWriter(syncFile)) {
+                writer.write("START:" + startMillis + ":" + traces.size());
+            }
+            List<Integer> exitCodes = new ArrayList<>();
+            for (CompletableFuture<Integer> process : processes) {
+                exitCodes.add(process.get());
+            }
+            wallMillis = System.currentTimeMillis() - startMillis;
+            return exitCodes;
+        } finally {
+            if (!syncFile.delete()) {
+                syncFile.deleteOnExit();
+            }
+        }
+    }
+
+    private List<Integer> replayInThreads(String databasePath) throws Exception {
+        CountDownLatch ready = new CountDownLatch(traces.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> workers = new ArrayList<>();
+        for (File trace : traces) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            Thread worker = new Thread(() -> {
+                boolean[] arrived = new boolean[1];
+                try {
+                    ProcessResult result = replayTrace(trace, databasePath, maxSpeed, processName -> {
+                        arrived[0] = true;
+                        ready.countDown();
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                    accept(result);
+                    future.complete(result.exitCode);
+                } finally {
+                    if (!arrived[0]) {
+                        ready.countDown();
+                    }
+                    future.complete(1);
+                }
+            }, trace.getName() + "-Replay");
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(future);
+        }
+        if (!ready.await(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            logger.warn("Only {} of {} replay threads became ready", traces.size() - ready.getCount(), traces.size());
+        }
+        long startMillis = System.currentTimeMillis();
+        start.countDown();
+        List<Integer> exitCodes = new ArrayList<>();
+        for (CompletableFuture<Integer> worker : workers) {
+            exitCodes.add(worker.get());
+        }
+        wallMillis = System.currentTimeMillis() - startMillis;
+        return exitCodes;
+    }
+
+    private void accept(ProcessResult result) {
+        if (result.process != null) {
+            results.put(result.process, result);
+        }
+        if (result.sequence != null) {
+            committedSequences.merge(result.sequence.getWriter(), result.sequence.getCommitted(), Math::max);
+        }
+    }
+
+    /**
+     * 用轨迹中的种子初始化数据库，使初始数据与原始运行相同
+     */
+    private void useRecordedSeed() {
+        Long seed = null;
+        for (File trace : traces) {
+            try (OpTrace.Reader reader = new OpTrace.Reader(trace)) {
+                if (seed != null && seed != reader.getSeed()) {
+                    logger.warn("Trace {} was recorded with a different workload seed", trace);
+                } else {
+                    seed = reader.getSeed();
+                }
+            } catch (IOException e) {
+                throw new NfsTestException("Failed to read operation trace " + trace, e);
+            }
+        }
+        if (seed != null && TestOptions.getWorkloadSeed() == null) {
+            System.setProperty(TestOptions.PREFIX + "workload.seed", String.valueOf(seed));
+        }
+    }
+
+    private CompletableFuture<Integer> startReplayProcess(File trace, String databasePath, File syncFile,
+                                                          CountDownLatch ready) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(TestOptions.toJvmArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TraceReplay.class.getName());
+        command.add(trace.getAbsolutePath());
+        command.add(databasePath);
+        command.add(maxSpeed ? "max" : "recorded");
+        command.add(syncFile.getAbsolutePath());
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        String name = trace.getName().replace(OpTrace.FILE_SUFFIX, "");
+        // 每个重放进程一个读取线程，进程数多于公共线程池大小时也不会阻塞子进程输出
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        Thread relay = new Thread(() -> future.complete(relayOutput(name, process, ready)), name + "-Replay");
+        relay.setDaemon(true);
+        relay.start();
+        return future;
+    }
+
+    private int relayOutput(String name, Process process, CountDownLatch ready) {
+        boolean signalledReady = false;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (ChildProcess.READY_LINE.equals(line)) {
+                    if (!signalledReady) {
+                        signalledReady = true;
+                        ready.countDown();
+                    }
+                } else if (line.startsWith(LINE_PREFIX)) {
+                    accept(ProcessResult.parse(line));
+                } else if (WriteSequence.isSequenceLine(line)) {
+                    WriteSequence sequence = WriteSequence.parse(line);
+                    committedSequences.merge(sequence.getWriter(), sequence.getCommitted(), Math::max);
+                } else {
+                    logger.info("[{}] {}", name, line);
+                }
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                logger.error("Replay process {} failed with exit code: {}", name, exitCode);
+            }
+            return exitCode;
+        } catch (IOException e) {
+            logger.error("Failed to read output of replay process {}", name, e);
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            if (!signalledReady) {
+                ready.countDown();
+            }
+        }
+    }
+
+    // ---------- 重放进程 ----------
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: TraceReplay <traceFile> <databasePath> <recorded|max> [syncFilePath]");
+            System.exit(1);
+        }
+        File traceFile = new File(args[0]);
+        String databasePath = args[1];
+        LogSetup.configure("replay-" + traceFile.getName().replace(OpTrace.FILE_SUFFIX, ""), true);
+        boolean maxSpeed = "max".equalsIgnoreCase(args[2]);
+        String syncFilePath = args.length > 3 ? args[3] : null;
+        ProcessResult result = replayTrace(traceFile, databasePath, maxSpeed, processName -> {
+            if (syncFilePath != null) {
+                ChildProcess.waitForStartSignal(processName, syncFilePath);
+            }
+        });
+        if (result.process != null) {
+            System.out.println(result.toLine());
+        }
+        if (result.sequence != null) {
+            result.sequence.report(System.out);
+        }
+        System.out.flush();
+        System.exit(result.exitCode);
+    }
+
+    /**
+     * 按顺序执行一个轨迹中的所有操作，结果中的exitCode为0表示正常，2表示检测到损坏
+     *
+     * @param startBarrier 连接数据库后以进程名调用，返回后开始重放
+     */
+    static ProcessResult replayTrace(File traceFile, String databasePath, boolean maxSpeed,
+                                     Consumer<String> startBarrier) {
+        ProcessResult result = new ProcessResult();
+        Map<Byte, LatencyHistogram> latencies = new HashMap<>();
+        long startNanos = System.nanoTime();
+
+        try (OpTrace.Reader reader = new OpTrace.Reader(traceFile)) {
+            result.process = reader.getProcessName();
+            result.sequence = new WriteSequence(result.process);
+            JdbcTemplate jdbcTemplate = DatabaseConfig.createJdbcTemplate(databasePath);
+            UserRepository userRepository = new UserRepository(jdbcTemplate);
+            if (!userRepository.isConnectionHealthy()) {
+                throw new NfsTestException("Database connection is not healthy");
+            }
+            startBarrier.accept(result.process);
+
+            startNanos = System.nanoTime();
+            long firstOpNanos = -1;
+            OpTrace.Op op;
+            while ((op = reader.next()) != null) {
+                if (op.type == OpTrace.CYCLE_END) {
+                    continue;
+                }
+                if (!maxSpeed) {
+                    // 轨迹创建后子进程还要等待启动信号，以第一个操作为时间原点
+                    if (firstOpNanos < 0) {
+                        firstOpNanos = op.startNanos;
+                    }
+                    long delay = startNanos + (op.startNanos - firstOpNanos) - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                }
+
+                // 原始运行中失败的插入没有提交，重放时跳过，其序号也不能确认
+                if (op.outcome == OpTrace.FAILED && op.type == OpTrace.INSERT) {
+                    result.skipped++;
+                    continue;
+                }
+
+                long opStart = System.nanoTime();
+                try {
+                    result.busyRetries += execute(jdbcTemplate, userRepository, result.process, op,
+                                                  op.outcome != OpTrace.FAILED);
+                    if (op.type == OpTrace.INSERT) {
+                        if (op.seq > 0) {
+                            result.sequence.commit(op.seq);
+                        }
+                        result.inserts++;
+                    }
+                } catch (RuntimeException e) {
+                    result.errors++;
+                    if (NfsTestException.isBusy(e)) {
+                        // 重试用尽：继续重放会在序号中留下缺口，校验时被当作丢失的写入
+                        logger.error("Replay of {} gave up at operation {} after {} busy retries",
+                                     result.process, result.operations + 1, MAX_BUSY_RETRIES, e);
+                        result.exitCode = 1;
+                        break;
+                    }
+                    if (NfsTestException.isDatabaseCorruption(e)) {
+                        logger.error("Replay of {} detected database corruption at operation {}",
+                                     result.process, result.operations + 1, e);
+                        result.exitCode = 2;
+                        break;
+                    }
+                    logger.warn("Replay of {} operation {} failed", result.process, result.operations + 1, e);
+                }
+                latencies.computeIfAbsent(op.type, type -> new LatencyHistogram()).recordNanos(System.nanoTime() - opStart);
+                result.operations++;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read operation trace {}", traceFile, e);
+            result.exitCode = 1;
+        } catch (RuntimeException e) {
+            logger.error("Replay of {} failed", result.process, e);
+            result.exitCode = 1;
+        }
+
+        result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        LatencyHistogram insertLatency = latencies.getOrDefault(OpTrace.INSERT, new LatencyHistogram());
+        LatencyHistogram queryLatency = latencies.getOrDefault(OpTrace.QUERY, new LatencyHistogram());
+        result.insertP50Micros = insertLatency.getPercentileMicros(50);
+        result.insertP99Micros = insertLatency.getPercentileMicros(99);
+        result.insertMaxMicros = insertLatency.getMaxMicros();
+        result.queryP99Micros = queryLatency.getPercentileMicros(99);
+        logger.info("Replay of {} finished: inserts {}, queries {}", result.process,
+                    insertLatency.describe(), queryLatency.describe());
+        return result;
+    }
+
+    /**
+     * 执行一个操作，返回重试次数
+     *
+     * @param retryBusy 原始运行中成功的操作锁等待时退避重试，最多MAX_BUSY_RETRIES次；原始运行中失败的操作只执行一次，忙错误不重试也不算错误
+     */
+    private static int execute(JdbcTemplate jdbcTemplate, UserRepository userRepository, String processName,
+                               OpTrace.Op op, boolean retryBusy) {
+        int retries = 0;
+        while (true) {
+            try {
+                switch (op.type) {
+                    case OpTrace.QUERY:
+                        userRepository.queryUsers(processName, op.queryType, op.minAge, op.maxAge);
+                        break;
+                    case OpTrace.INSERT:
+                        userRepository.insertUser(UserRepository.userName(processName, op.index),
+                                                  UserRepository.userEmail(processName, op.index), op.age,
+                                                  UserRepository.userData(processName, op.dataToken),
+                                                  op.seq > 0 ? processName : null, op.seq > 0 ? op.seq : null);
+                        break;
+                    case OpTrace.INTEGRITY:
+                        // 直接执行而不是用checkDatabaseIntegrity()，锁等待要重试而不是当作检查失败
+                        String integrity = jdbcTemplate.queryForObject("PRAGMA integrity_check", String.class);
+                        if (!"ok".equalsIgnoreCase(integrity)) {
+                            throw new NfsTestException("Database corruption detected by integrity check: " + integrity);
+                        }
+                        break;
+                    default:
+                        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                }
+                return retries;
+            } catch (RuntimeException e) {
+                if (!NfsTestException.isBusy(e)) {
+                    throw e;
+                }
+                if (!retryBusy) {
+                    return retries;
+                }
+                if (retries >= MAX_BUSY_RETRIES) {
+                    throw e;
+                }
+                retries++;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1 + retries % 3));
+            }
+        }
+    }
+
+    /**
+     * 一个重放进程的结果
+     */
+    public static class ProcessResult {
+        private int exitCode;
+        private WriteSequence sequence;
+        private String process;
+        private long operations;
+        private long inserts;
+        private long skipped;
+        private long busyRetries;
+        private long errors;
+        private long elapsedMillis;
+        private long insertP50Micros;
+        private long insertP99Micros;
+        private long insertMaxMicros;
+        private long queryP99Micros;
+
+        String toLine() {
+            return LINE_PREFIX + "process=" + process
+                   + " ops=" + operations
+                   + " inserts=" + inserts
+                   + " skipped=" + skipped
+                   + " busy=" + busyRetries
+                   + " errors=" + errors
+                   + " elapsed.ms=" + elapsedMillis
+                   + " insert.p50.us=" + insertP50Micros
+                   + " insert.p99.us=" + insertP99Micros
+                   + " insert.max.us=" + insertMaxMicros
+                   + " query.p99.us=" + queryP99Micros;
+        }
+
+        static ProcessResult parse(String line) {
+            ProcessResult result = new ProcessResult();
+            for (String token : line.substring(LINE_PREFIX.length()).trim().split(" ")) {
+                int separator = token.indexOf('=');
+                if (separator < 0) {
+                    continue;
+                }
+                String key = token.substring(0, separator);
+                String value = token.substring(separator + 1);
+                try {
+                    switch (key) {
+                        case "process": result.process = value; break;
+                        case "ops": result.operations = Long.parseLong(value); break;
+                        case "inserts": result.inserts = Long.parseLong(value); break;
+                        case "skipped": result.skipped = Long.parseLong(value); break;
+                        case "busy": result.busyRetries = Long.parseLong(value); break;
+                        case "errors": result.errors = Long.parseLong(value); break;
+                        case "elapsed.ms": result.elapsedMillis = Long.parseLong(value); break;
+                        case "insert.p50.us": result.insertP50Micros = Long.parseLong(value); break;
+                        case "insert.p99.us": result.insertP99Micros = Long.parseLong(value); break;
+                        case "insert.max.us": result.insertMaxMicros = Long.parseLong(value); break;
+                        case "query.p99.us": result.queryP99Micros = Long.parseLong(value); break;
+                        default: break;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new NfsTestException("Malformed replay line: " + line, e);
+                }
+            }
+            if (result.process == null) {
+                throw new NfsTestException("Malformed replay line: " + line);
+            }
+            return result;
+        }
+
+        public String getProcess() {
+            return process;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public long getInserts() {
+            return inserts;
+        }
+
+        public long getBusyRetries() {
+            return busyRetries;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public long getInsertP50Micros() {
+            return insertP50Micros;
+        }
+
+        public long getInsertP99Micros() {
+            return insertP99Micros;
+        }
+
+        public long getInsertMaxMicros() {
+            return insertMaxMicros;
+        }
+
+        public long getQueryP99Micros() {
+            return queryP99Micros;
+        }
+    }
+
+    /**
+     * 一次重放的汇总
+     */
+    public static class Summary {
+        private final String databasePath;
+        private final boolean inProcess;
+        private final long wallMillis;
+        private final List<ProcessResult> results;
+        private final boolean successful;
+        private final boolean corruption;
+
+        Summary(String databasePath, boolean inProcess, long wallMillis, List<ProcessResult> results,
+                boolean successful, boolean corruption) {
+            this.databasePath = databasePath;
+            this.inProcess = inProcess;
+            this.wallMillis = wallMillis;
+            this.results = results;
+            this.successful = successful;
+            this.corruption = corruption;
+            this.results.sort((a, b) -> a.process.compareTo(b.process));
+        }
+
+        public long getTotalOperations() {
+            return results.stream().mapToLong(ProcessResult::getOperations).sum();
+        }
+
+        public long getTotalInserts() {
+            return results.stream().mapToLong(ProcessResult::getInserts).sum();
+        }
+
+        public long getTotalBusyRetries() {
+            return results.stream().mapToLong(ProcessResult::getBusyRetries).sum();
+        }
+
+        public long getTotalErrors() {
+            return results.stream().mapToLong(ProcessResult::getErrors).sum();
+        }
+
+        public long getWorstInsertP99Micros() {
+            return results.stream().mapToLong(ProcessResult::getInsertP99Micros).max().orElse(0);
+        }
+
+        public long getWorstInsertMaxMicros() {
+            return results.stream().mapToLong(ProcessResult::getInsertMaxMicros).max().orElse(0);
+        }
+
+        public double getOperationsPerSecond() {
+            return wallMillis > 0 ? getTotalOperations() * 1000.0 / wallMillis : 0;
+        }
+
+        public double getInsertsPerSecond() {
+            return wallMillis > 0 ? getTotalInserts() * 1000.0 / wallMillis : 0;
+        }
+
+        /**
+         * 是否在本进程内用线程重放（内存数据库）
+         */
+        public boolean isInProcess() {
+            return inProcess;
+        }
+
+        public String getDatabasePath() {
+            return databasePath;
+        }
+
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        public List<ProcessResult> getResults() {
+            return results;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        public boolean isCorruption() {
+            return corruption;
+        }
+
+        void log() {
+            logger.info("=== Replay Results ({}) ===", databasePath);
+            for (ProcessResult result : results) {
+                logger.info("{}: ops={}, inserts={}, skipped failed inserts={}, elapsed={}ms, busy retries={}, "
+                            + "errors={}, insert p50={}us p99={}us max={}us, query p99={}us",
+                            result.process, result.operations, result.inserts, result.skipped, result.elapsedMillis,
+                            result.busyRetries, result.errors, result.insertP50Micros, result.insertP99Micros,
+                            result.insertMaxMicros, result.queryP99Micros);
+            }
+            logger.info("Total: {} ops ({} inserts) in {}ms, {} ops/s, {} inserts/s, busy retries={}, errors={}, result {}",
+                        getTotalOperations(), getTotalInserts(), wallMillis,
+                        String.format("%.1f", getOperationsPerSecond()), String.format("%.1f", getInsertsPerSecond()),
+                        getTotalBusyRetries(), getTotalErrors(), successful ? "PASSED" : "FAILED");
+        }
+    }
+}
@@ -2,12 +2,16 @@ package com.grapecity.phoenix.sqlitetest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Users表操作类
@@ -15,13 +19,76 @@ import java.util.UUID;
 public class UserRepository {
     
     private static final Logger logger = LoggerFactory.getLogger(UserRepository.class);
+    private static final int MAX_BUSY_RETRIES = 50;
     private final JdbcTemplate jdbcTemplate;
-    private final Random random = new Random();
+    private Random random = new Random();
+    private WriterMetrics writerMetrics;
+    private WriteSequence writeSequence;
+    private WriterPacing writerPacing;
+    private OpTrace.Writer opTrace;
+    private ContentionTracer contentionTracer;
     
     public UserRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
     
+    /**
+     * 设置写入指标记录器（仅子进程使用）
+     */
+    public void setWriterMetrics(WriterMetrics writerMetrics) {
+        this.writerMetrics = writerMetrics;
+    }
+    
+    /**
+     * 设置写入者序号（仅子进程使用），设置后插入的每一行都带上写入者名称和序号
+     */
+    public void setWriteSequence(WriteSequence writeSequence) {
+        this.writeSequence = writeSequence;
+    }
+    
+    /**
+     * 设置写入节奏（仅自适应模式的子进程使用），设置后由主进程控制插入间隔和暂停
+     */
+    public void setWriterPacing(WriterPacing writerPacing) {
+        this.writerPacing = writerPacing;
+    }
+    
+    /**
+     * 设置随机数生成器，使用工作负载种子派生的生成器时查询条件和插入数据可以重现
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+    
+    /**
+     * 设置操作轨迹（仅子进程使用），设置后每个操作都写入轨迹文件
+     */
+    public void setOpTrace(OpTrace.Writer opTrace) {
+        this.opTrace = opTrace;
+    }
+    
+    /**
+     * 设置锁竞争追踪（仅子进程使用），设置后插入和查询分别记为insert、query操作
+     */
+    public void setContentionTracer(ContentionTracer contentionTracer) {
+        this.contentionTracer = contentionTracer;
+    }
+    
+    /**
+     * 子进程插入的姓名、邮箱和数据（重放时按轨迹中的参数重新生成）
+     */
+    public static String userName(String processName, int index) {
+        return processName + "-User-" + index;
+    }
+    
+    public static String userEmail(String processName, int index) {
+        return processName.toLowerCase() + index + "@test.com";
+    }
+    
+    public static String userData(String processName, long dataToken) {
+        return processName + "-Data-" + Long.toHexString(dataToken);
+    }
+    
     /**
      * 创建users表并应用激进的SQLite配置
      */
@@ -37,11 +104,14 @@ public class UserRepository {
                     email TEXT,
                     age INTEGER,
                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    data TEXT
+                    data TEXT,
+                    writer TEXT,
+                    seq INTEGER
                 )
                 """;
             
             jdbcTemplate.execute(createTableSql);
+            ensureSequenceColumns();
             logger.info("Users table created or already exists with aggressive SQLite settings");
         } catch (Exception e) {
             logger.error("Failed to create users table", e);
@@ -57,8 +127,19 @@ public class UserRepository {
      */
     private void applyAggressivePragmaSettings() {
         try {
-            // 确保WAL模式
-            jdbcTemplate.execute("PRAGMA journal_mode = WAL");
+            // 文件格式相关设置必须在同一个连接上、切换WAL之前执行才能持久化
+            // （JdbcTemplate每条语句都会打开新连接，分开执行时auto_vacuum不会生效）
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    // 启用增量清理
+                    statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                    // 优化页面大小
+                    statement.execute("PRAGMA page_size = 4096");
+                    // 确保WAL模式
+                    statement.execute("PRAGMA journal_mode = WAL");
+                }
+                return null;
+            });
             
             // 关闭同步，最大风险但最高性能
             jdbcTemplate.execute("PRAGMA synchronous = OFF");
@@ -78,12 +159,6 @@ public class UserRepository {
             // 激进的WAL自动检查点
             jdbcTemplate.execute("PRAGMA wal_autocheckpoint = 100");
             
-            // 优化页面大小
-            jdbcTemplate.execute("PRAGMA page_size = 4096");
-            
-            // 启用增量清理
-            jdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
-            
             logger.info("Applied aggressive SQLite PRAGMA settings for NFS stress testing");
             
         } catch (Exception e) {
@@ -91,6 +166,39 @@ public class UserRepository {
         }
     }
     
+    /**
+     * 补齐写入者序号列和索引（旧的种子文件没有这两列）
+     * 部分索引只包含子进程写入的行，初始数据和批量装载的数据不进入索引
+     */
+    private void ensureSequenceColumns() {
+        List<String> columns = jdbcTemplate.queryForList("SELECT name FROM pragma_table_info('users')", String.class);
+        if (!columns.contains("writer")) {
+            jdbcTemplate.execute("ALTER TABLE users ADD COLUMN writer TEXT");
+        }
+        if (!columns.contains("seq")) {
+            jdbcTemplate.execute("ALTER TABLE users ADD COLUMN seq INTEGER");
+        }
+        jdbcTemplate.execute(
+            "CREATE INDEX IF NOT EXISTS idx_users_writer_seq ON users(writer, seq) WHERE writer IS NOT NULL");
+    }
+    
+    /**
+     * 创建users表的二级索引（批量装载时可延迟到数据写入之后）
+     */
+    public void createUsersIndexes() {
+        try {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_age ON users(age)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_name ON users(name)");
+            logger.info("Users secondary indexes created or already exist");
+        } catch (Exception e) {
+            logger.error("Failed to create users indexes", e);
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected while creating indexes", e);
+            }
+            throw new NfsTestException("Failed to create users indexes", e);
+        }
+    }
+    
     /**
      * 插入初始测试数据
      */
@@ -102,7 +210,7 @@ public class UserRepository {
                 String name = "User" + i;
                 String email = "user" + i + "@test.com";
                 int age = 20 + random.nextInt(50);
-                String data = "InitialData-" + UUID.randomUUID().toString().substring(0, 8);
+                String data = "InitialData-" + Long.toHexString(random.nextLong());
                 
                 insertUser(name, email, age, data);
             }
@@ -120,10 +228,17 @@ public class UserRepository {
      * 插入单个用户
      */
     public void insertUser(String name, String email, int age, String data) {
-        String insertSql = "INSERT INTO users (name, email, age, data) VALUES (?, ?, ?, ?)";
+        insertUser(name, email, age, data, null, null);
+    }
+    
+    /**
+     * 插入单个用户并记录写入者和序号
+     */
+    public void insertUser(String name, String email, int age, String data, String writer, Long seq) {
+        String insertSql = "INSERT INTO users (name, email, age, data, writer, seq) VALUES (?, ?, ?, ?, ?, ?)";
         
         try {
-            jdbcTemplate.update(insertSql, name, email, age, data);
+            jdbcTemplate.update(insertSql, name, email, age, data, writer, seq);
         } catch (Exception e) {
             if (NfsTestException.isDatabaseCorruption(e)) {
                 throw new NfsTestException("Database corruption detected while inserting user", e);
@@ -136,17 +251,29 @@ public class UserRepository {
      * 随机条件查询用户
      */
     public List<Map<String, Object>> queryRandomUsers(String processName) {
+        // 随机选择查询条件
+        int queryType = random.nextInt(3);
+        int minAge = 0;
+        int maxAge = 0;
+        if (queryType == 0) {
+            minAge = 20 + random.nextInt(30);
+            maxAge = minAge + random.nextInt(20);
+        }
+        return queryUsers(processName, queryType, minAge, maxAge);
+    }
+    
+    /**
+     * 按指定条件查询用户：0-年龄范围，1-名称模糊匹配，其他-随机获取
+     */
+    public List<Map<String, Object>> queryUsers(String processName, int queryType, int minAge, int maxAge) {
+        long startNanos = System.nanoTime();
         try {
-            // 随机选择查询条件
-            int queryType = random.nextInt(3);
             String sql;
             Object[] params;
             
             switch (queryType) {
                 case 0:
                     // 按年龄范围查询
-                    int minAge = 20 + random.nextInt(30);
-                    int maxAge = minAge + random.nextInt(20);
                     sql = "SELECT * FROM users WHERE age BETWEEN ? AND ? LIMIT 10";
                     params = new Object[]{minAge, maxAge};
                     break;
@@ -162,11 +289,33 @@ public class UserRepository {
                     params = new Object[]{};
             }
             
+            JfrEvents.QueryEvent event = new JfrEvents.QueryEvent();
+            event.begin();
+            if (contentionTracer != null) {
+                contentionTracer.begin("query");
+            }
             List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, params);
-            logger.debug("Process {} queried {} users", processName, results.size());
+            if (contentionTracer != null) {
+                contentionTracer.end(null);
+            }
+            event.queryType = queryType == 0 ? "age-range" : queryType == 1 ? "name-like" : "random";
+            event.rows = results.size();
+            event.commit();
+            if (opTrace != null) {
+                opTrace.query(startNanos, OpTrace.OK, queryType, minAge, maxAge);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Process {} queried {} users", processName, results.size());
+            }
             return results;
             
         } catch (Exception e) {
+            if (contentionTracer != null) {
+                contentionTracer.end(e);
+            }
+            if (opTrace != null) {
+                opTrace.query(startNanos, OpTrace.FAILED, queryType, minAge, maxAge);
+            }
             logger.error("Process {} failed to query users", processName, e);
             if (NfsTestException.isDatabaseCorruption(e)) {
                 throw new NfsTestException("Database corruption detected while querying users", e);
@@ -182,30 +331,130 @@ public class UserRepository {
         long startTime = System.currentTimeMillis();
         long endTime = startTime + 5000; // 5秒
         int insertCount = 0;
+        int failedCount = 0;
         
-        logger.debug("Process {} starting batch insert for 5 seconds", processName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Process {} starting batch insert for 5 seconds", processName);
+        }
         
+        JfrEvents.InsertBatchEvent batchEvent = new JfrEvents.InsertBatchEvent();
+        batchEvent.begin();
         try {
             while (System.currentTimeMillis() < endTime) {
+                // 自适应模式下写入者可能被主进程暂停
+                if (writerPacing != null && !writerPacing.awaitActive(endTime)) {
+                    break;
+                }
+                
                 insertCount++;
-                String name = processName + "-User-" + insertCount;
-                String email = processName.toLowerCase() + insertCount + "@test.com";
+                String name = userName(processName, insertCount);
+                String email = userEmail(processName, insertCount);
                 int age = 18 + random.nextInt(60);
-                String data = processName + "-Data-" + System.currentTimeMillis();
+                long dataToken = random.nextLong();
+                String data = userData(processName, dataToken);
                 
-                insertUser(name, email, age, data);
+                Long seq = writeSequence != null ? writeSequence.next() : null;
+                JfrEvents.InsertEvent insertEvent = new JfrEvents.InsertEvent();
+                insertEvent.begin();
+                insertEvent.seq = seq != null ? seq : 0;
+                long opStartNanos = System.nanoTime();
+                boolean gaveUp = false;
+                while (true) {
+                    insertEvent.attempts++;
+                    JfrEvents.BusyWaitEvent busyEvent = new JfrEvents.BusyWaitEvent();
+                    busyEvent.begin();
+                    long insertStart = System.nanoTime();
+                    if (contentionTracer != null) {
+                        contentionTracer.begin("insert");
+                    }
+                    try {
+                        insertUser(name, email, age, data, seq != null ? processName : null, seq);
+                        if (contentionTracer != null) {
+                            contentionTracer.end(null);
+                        }
+                        if (writerMetrics != null) {
+                            writerMetrics.recordOperation(System.nanoTime() - insertStart);
+                        }
+                        break;
+                    } catch (RuntimeException e) {
+                        if (contentionTracer != null) {
+                            contentionTracer.end(e);
+                        }
+                        if (writerMetrics != null) {
+                            writerMetrics.recordError(e);
+                        }
+                        boolean busy = NfsTestException.isBusy(e);
+                        if (busy) {
+                            busyEvent.operation = "insert";
+                            busyEvent.attempt = insertEvent.attempts;
+                            busyEvent.commit();
+                        }
+                        // 自适应模式下忙错误是控制器的反馈信号：未提交，退避后用同一序号重试
+                        if (writerPacing == null || !busy) {
+                            insertEvent.commit();
+                            if (opTrace != null) {
+                                opTrace.insert(opStartNanos, OpTrace.FAILED, insertCount, age, dataToken,
+                                               insertEvent.seq, insertEvent.attempts);
+                            }
+                            throw e;
+                        }
+                        // 重试次数和批次截止时间都有上限，放弃的插入计为失败，不终止子进程
+                        if (insertEvent.attempts >= MAX_BUSY_RETRIES || System.currentTimeMillis() >= endTime) {
+                            logger.warn("Process {} gave up insert {} after {} busy attempts",
+                                        processName, insertCount, insertEvent.attempts);
+                            gaveUp = true;
+                            break;
+                        }
+                        Thread.sleep(1 + ThreadLocalRandom.current().nextInt(3));
+                    }
+                }
+                if (gaveUp) {
+                    failedCount++;
+                    insertEvent.commit();
+                    if (opTrace != null) {
+                        opTrace.insert(opStartNanos, OpTrace.FAILED, insertCount, age, dataToken,
+                                       insertEvent.seq, insertEvent.attempts);
+                    }
+                    if (seq != null) {
+                        // 未提交的序号留给下一行，否则会在校验时成为假的丢失写入
+                        writeSequence.release(seq);
+                    }
+                } else {
+                    insertEvent.success = true;
+                    insertEvent.commit();
+                    if (opTrace != null) {
+                        opTrace.insert(opStartNanos, OpTrace.OK, insertCount, age, dataToken,
+                                       insertEvent.seq, insertEvent.attempts);
+                    }
+                    if (seq != null) {
+                        // 自动提交模式下语句返回即已提交
+                        writeSequence.commit(seq);
+                    }
+                }
                 
-                // 极小延迟以最大化并发压力和竞态条件
-                Thread.sleep(1 + random.nextInt(3));
+                if (writerPacing != null) {
+                    writerPacing.pause();
+                } else {
+                    // 极小延迟以最大化并发压力和竞态条件
+                    Thread.sleep(1 + ThreadLocalRandom.current().nextInt(3));
+                }
             }
             
-            logger.info("Process {} inserted {} users in 5 seconds", processName, insertCount);
-            return insertCount;
+            int inserted = insertCount - failedCount;
+            batchEvent.rows = inserted;
+            batchEvent.commit();
+            if (failedCount > 0) {
+                logger.info("Process {} inserted {} users in 5 seconds, {} inserts failed after busy retries",
+                            processName, inserted, failedCount);
+            } else {
+                logger.info("Process {} inserted {} users in 5 seconds", processName, inserted);
+            }
+            return inserted;
             
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.warn("Process {} batch insert was interrupted", processName);
-            return insertCount;
+            return insertCount - failedCount;
         } catch (Exception e) {
             logger.error("Process {} batch insert failed after {} inserts", processName, insertCount, e);
             if (NfsTestException.isDatabaseCorruption(e)) {
@@ -231,14 +480,104 @@ public class UserRepository {
         }
     }
     
+    /**
+     * 按行数保留：返回需要删除的最大id（只保留最新的keepRows行），没有需要清理的数据时返回null
+     */
+    public Long findRetentionCutoffId(long keepRows) {
+        try {
+            return jdbcTemplate.query("SELECT id FROM users ORDER BY id DESC LIMIT 1 OFFSET ?",
+                                      rs -> rs.next() ? rs.getLong(1) : null, keepRows);
+        } catch (Exception e) {
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected while finding retention cutoff", e);
+            }
+            throw new NfsTestException("Failed to find retention cutoff", e);
+        }
+    }
+    
+    /**
+     * 按时间保留：返回created_at早于指定秒数之前的最大id，没有过期数据时返回null
+     * 先检查最旧的一行，没有过期数据时不扫描表
+     */
+    public Long findExpiredCutoffId(long retentionSeconds) {
+        try {
+            String cutoff = jdbcTemplate.queryForObject(
+                "SELECT datetime('now', ?)", String.class, "-" + retentionSeconds + " seconds");
+            Integer oldestExpired = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT created_at FROM users ORDER BY id LIMIT 1) WHERE created_at < ?",
+                Integer.class, cutoff);
+            if (oldestExpired == null || oldestExpired == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM users WHERE created_at < ?", Long.class, cutoff);
+        } catch (Exception e) {
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected while finding expired users", e);
+            }
+            throw new NfsTestException("Failed to find expired users", e);
+        }
+    }
+    
+    /**
+     * 删除id不大于cutoffId的最旧一批用户，返回本批删除的行数
+     */
+    public int deleteUsersUpTo(long cutoffId, int batchSize) {
+        try {
+            return jdbcTemplate.update(
+                "DELETE FROM users WHERE id IN (SELECT id FROM users WHERE id <= ? ORDER BY id LIMIT ?)",
+                cutoffId, batchSize);
+        } catch (Exception e) {
+            if (NfsTestException.isDatabaseCorruption(e)) {
+                throw new NfsTestException("Database corruption detected while deleting old users", e);
+            }
+            throw new NfsTestException("Failed to delete old users", e);
+        }
+    }
+    
+    /**
+     * 执行PRAGMA incremental_vacuum(N)，返回回收的页数
+     * 注意：sqlite-jdbc的execute()只推进一步（只释放一页），必须用executeUpdate()执行到底
+     */
+    public long incrementalVacuum(int pages) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                long before = queryPragmaLong(statement, "PRAGMA freelist_count");
+                statement.executeUpdate("PRAGMA incremental_vacuum(" + pages + ")");
+                return before - queryPragmaLong(statement, "PRAGMA freelist_count");
+            }
+        });
+    }
+    
+    /**
+     * 读取数值型PRAGMA，例如freelist_count、page_count、auto_vacuum
+     */
+    public long getPragmaValue(String pragma) {
+        Long value = jdbcTemplate.queryForObject("PRAGMA " + pragma, Long.class);
+        return value != null ? value : 0;
+    }
+    
+    private static long queryPragmaLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+    
     /**
      * 检查数据库连接是否正常
      */
     public boolean isConnectionHealthy() {
+        long startNanos = System.nanoTime();
         try {
             jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            if (opTrace != null) {
+                opTrace.simple(OpTrace.HEALTH, startNanos, OpTrace.OK);
+            }
             return true;
         } catch (Exception e) {
+            if (opTrace != null) {
+                opTrace.simple(OpTrace.HEALTH, startNanos, OpTrace.FAILED);
+            }
             logger.warn("Database connection health check failed", e);
             return false;
         }
@@ -248,9 +587,17 @@ public class UserRepository {
      * 执行SQLite PRAGMA integrity_check
      */
     public boolean checkDatabaseIntegrity() {
+        long startNanos = System.nanoTime();
         try {
+            JfrEvents.IntegrityCheckEvent event = new JfrEvents.IntegrityCheckEvent();
+            event.begin();
             String result = jdbcTemplate.queryForObject("PRAGMA integrity_check", String.class);
             boolean isOk = "ok".equalsIgnoreCase(result);
+            event.passed = isOk;
+            event.commit();
+            if (opTrace != null) {
+                opTrace.simple(OpTrace.INTEGRITY, startNanos, isOk ? OpTrace.OK : OpTrace.FAILED);
+            }
             
             if (isOk) {
                 logger.debug("Database integrity check: PASSED");
@@ -261,79 +608,11 @@ public class UserRepository {
             return isOk;
             
         } catch (Exception e) {
-            logger.error("Failed to perform database integrity check", e);
-            return false;
-        }
-    }
-    
-    /**
-     * 检查数据一致性：验证是否存在重复的主键或异常数据
-     */
-    public boolean checkDataConsistency() {
-        try {
-            // 检查主键唯一性
-            Integer duplicateIds = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM (SELECT id, COUNT(*) as cnt FROM users GROUP BY id HAVING cnt > 1)", 
-                Integer.class);
-            
-            if (duplicateIds != null && duplicateIds > 0) {
-                logger.error("Data consistency check FAILED: Found {} duplicate primary keys", duplicateIds);
-                return false;
+            if (opTrace != null) {
+                opTrace.simple(OpTrace.INTEGRITY, startNanos, OpTrace.FAILED);
             }
-            
-            // 检查是否有NULL的必需字段
-            Integer nullNames = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM users WHERE name IS NULL", Integer.class);
-            
-            if (nullNames != null && nullNames > 0) {
-                logger.error("Data consistency check FAILED: Found {} records with NULL names", nullNames);
-                return false;
-            }
-            
-            // 检查自增ID的连续性（允许少量缺失，但不应该有大的跳跃）
-            Integer minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Integer.class);
-            Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Integer.class);
-            Integer totalCount = getUserCount();
-            
-            if (minId != null && maxId != null && totalCount > 0) {
-                int expectedRange = maxId - minId + 1;
-                double continuityRate = (double) totalCount / expectedRange;
-                
-                // 如果连续性低于70%，可能存在异常（考虑到并发删除等正常情况）
-                if (continuityRate < 0.7) {
-                    logger.warn("Data consistency warning: ID continuity rate is {:.2f}% (min={}, max={}, count={})", 
-                               continuityRate * 100, minId, maxId, totalCount);
-                }
-            }
-            
-            logger.debug("Data consistency check: PASSED");
-            return true;
-            
-        } catch (Exception e) {
-            logger.error("Failed to perform data consistency check", e);
+            logger.error("Failed to perform database integrity check", e);
             return false;
         }
     }
-    
-    /**
-     * 综合数据库健康检查
-     */
-    public boolean performComprehensiveHealthCheck() {
-        logger.info("Performing comprehensive database health check...");
-        
-        boolean connectionOk = isConnectionHealthy();
-        boolean integrityOk = checkDatabaseIntegrity();
-        boolean consistencyOk = checkDataConsistency();
-        
-        boolean overallHealthy = connectionOk && integrityOk && consistencyOk;
-        
-        if (overallHealthy) {
-            logger.info("Comprehensive health check: PASSED");
-        } else {
-            logger.error("Comprehensive health check: FAILED (connection: {}, integrity: {}, consistency: {})", 
-                        connectionOk, integrityOk, consistencyOk);
-        }
-        
-        return overallHealthy;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SQLite WAL文件帧校验器（不经过SQLite，直接按文件格式校验）
+ * 先读取32字节文件头，然后按顺序逐帧校验salt和累计校验和
+ */
+public class WalFrameVerifier {
+
+    public static final int HEADER_SIZE = 32;
+    public static final int FRAME_HEADER_SIZE = 24;
+
+    private static final int MAGIC_LITTLE_ENDIAN = 0x377f0682;
+    private static final int MAGIC_BIG_ENDIAN = 0x377f0683;
+    private static final int FORMAT_VERSION = 3007000;
+
+    /**
+     * 单帧校验结果
+     */
+    public enum FrameStatus {
+        VALID,
+        VALID_COMMIT,
+        /** salt与文件头不一致：上一代WAL遗留的帧，正常的WAL结尾 */
+        SALT_MISMATCH,
+        /** salt一致但校验和错误：撕裂写或损坏 */
+        CHECKSUM_MISMATCH,
+        /** 页号为0等不可能出现的值 */
+        INVALID_HEADER
+    }
+
+    private boolean bigEndianChecksum;
+    private int pageSize;
+    private int checkpointSequence;
+    private int salt1;
+    private int salt2;
+    private int checksum1;
+    private int checksum2;
+    private long frameIndex;
+    private long lastValidFrame;
+    private long lastCommitFrame;
+    private int lastCommitDatabasePages;
+
+    /**
+     * 解析并校验WAL文件头，返回null表示成功，否则返回错误描述
+     */
+    public String readHeader(ByteBuffer header) {
+        ByteBuffer buffer = header.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int magic = buffer.getInt(0);
+        if (magic != MAGIC_LITTLE_ENDIAN && magic != MAGIC_BIG_ENDIAN) {
+            return String.format("bad WAL magic 0x%08x", magic);
+        }
+        bigEndianChecksum = magic == MAGIC_BIG_ENDIAN;
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            return "unsupported WAL format version " + version;
+        }
+        pageSize = buffer.getInt(8);
+        if (pageSize == 1) {
+            pageSize = 65536;
+        }
+        if (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1) {
+            return "invalid WAL page size " + pageSize;
+        }
+        checkpointSequence = buffer.getInt(12);
+        salt1 = buffer.getInt(16);
+        salt2 = buffer.getInt(20);
+
+        checksum1 = 0;
+        checksum2 = 0;
+        accumulate(buffer, 0, 24);
+        if (checksum1 != buffer.getInt(24) || checksum2 != buffer.getInt(28)) {
+            return "WAL header checksum mismatch";
+        }
+        frameIndex = 0;
+        lastValidFrame = 0;
+        lastCommitFrame = 0;
+        lastCommitDatabasePages = 0;
+        return null;
+    }
+
+    /**
+     * 校验下一帧；只有校验通过时才推进累计校验和
+     *
+     * @param frameHeader 24字节帧头
+     * @param page        页数据，长度为pageSize
+     */
+    public FrameStatus verifyFrame(ByteBuffer frameHeader, ByteBuffer page) {
+        ByteBuffer header = frameHeader.duplicate().order(ByteOrder.BIG_ENDIAN);
+        frameIndex++;
+        if (header.getInt(8) != salt1 || header.getInt(12) != salt2) {
+            return FrameStatus.SALT_MISMATCH;
+        }
+        if (header.getInt(0) == 0) {
+            return FrameStatus.INVALID_HEADER;
+        }
+
+        int saved1 = checksum1;
+        int saved2 = checksum2;
+        accumulate(header, 0, 8);
+        accumulate(page.duplicate(), 0, pageSize);
+        if (checksum1 != header.getInt(16) || checksum2 != header.getInt(20)) {
+            checksum1 = saved1;
+            checksum2 = saved2;
+            return FrameStatus.CHECKSUM_MISMATCH;
+        }
+
+        lastValidFrame = frameIndex;
+        int databasePages = header.getInt(4);
+        if (databasePages != 0) {
+            lastCommitFrame = frameIndex;
+            lastCommitDatabasePages = databasePages;
+            return FrameStatus.VALID_COMMIT;
+        }
+        return FrameStatus.VALID;
+    }
+
+    /**
+     * 撤销最近一次未通过的校验，使下一次verifyFrame重新校验同一帧（用于跟踪正在写入的文件）
+     * 校验失败时累计校验和不会推进，所以只需回退帧序号
+     */
+    public void rewindFrame() {
+        if (frameIndex > lastValidFrame) {
+            frameIndex--;
+        }
+    }
+
+    /**
+     * SQLite WAL校验和：按8字节为单位累加两个32位字
+     */
+    private void accumulate(ByteBuffer data, int offset, int length) {
+        ByteBuffer words = data.duplicate().order(bigEndianChecksum ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int base = data.position() + offset;
+        int s0 = checksum1;
+        int s1 = checksum2;
+        for (int i = 0; i < length; i += 8) {
+            s0 += words.getInt(base + i) + s1;
+            s1 += words.getInt(base + i + 4) + s0;
+        }
+        checksum1 = s0;
+        checksum2 = s1;
+    }
+
+    public static long frameOffset(long frameIndex, int pageSize) {
+        return HEADER_SIZE + (frameIndex - 1) * (FRAME_HEADER_SIZE + (long) pageSize);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getCheckpointSequence() {
+        return checkpointSequence;
+    }
+
+    public int getSalt1() {
+        return salt1;
+    }
+
+    public int getSalt2() {
+        return salt2;
+    }
+
+    /**
+     * 已校验的帧数（从1开始计数）
+     */
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    public long getLastValidFrame() {
+        return lastValidFrame;
+    }
+
+    public long getLastCommitFrame() {
+        return lastCommitFrame;
+    }
+
+    public int getLastCommitDatabasePages() {
+        return lastCommitDatabasePages;
+    }
+}
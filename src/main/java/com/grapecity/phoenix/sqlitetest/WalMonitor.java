@@ -0,0 +1,272 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * WAL文件实时监控线程 - 用定位读取跟踪-wal文件，不打开SQLite连接、不获取任何SQLite锁
+ * 按追加顺序增量校验帧头、salt和累计校验和，发现撕裂帧或乱序帧时立即报告，同时统计WAL增长和提交速率
+ */
+public class WalMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalMonitor.class);
+
+    private final File walFile;
+    private final long pollMillis;
+    private final int confirmPolls;
+    private final long reportMillis;
+    private Thread worker;
+
+    private WalFrameVerifier verifier;
+    private ByteBuffer currentHeader;
+    private long nextFrame = 1;
+    private long pendingBadFrame;
+    private int pendingBadPolls;
+    private String invalidHeaderError;
+    private int invalidHeaderPolls;
+
+    private long generations;
+    private long totalFrames;
+    private long totalCommits;
+    private long anomalies;
+    private long maxWalSize;
+    private long intervalFrames;
+    private long intervalCommits;
+    private long intervalStartSize;
+    private long intervalStartMillis;
+
+    public WalMonitor(String databasePath) {
+        this.walFile = new File(databasePath + "-wal");
+        this.pollMillis = TestOptions.getWalMonitorPollMillis();
+        this.confirmPolls = Math.max(1, TestOptions.getWalMonitorConfirmPolls());
+        this.reportMillis = TestOptions.getWalMonitorReportMillis();
+    }
+
+    public void start() {
+        logger.info("Starting WAL monitor on {} (poll {} ms, torn frame confirmation after {} polls)",
+                    walFile, pollMillis, confirmPolls);
+        intervalStartMillis = System.currentTimeMillis();
+        worker = new Thread(this::runLoop, "WalMonitor");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (anomalies > 0) {
+            logger.error("WAL monitor summary: {} anomalies detected, {} generations, {} frames, {} commits, max WAL size {} bytes",
+                         anomalies, generations, totalFrames, totalCommits, maxWalSize);
+        } else {
+            logger.info("WAL monitor summary: no anomalies, {} generations, {} frames, {} commits, max WAL size {} bytes",
+                        generations, totalFrames, totalCommits, maxWalSize);
+        }
+    }
+
+    public long getAnomalies() {
+        return anomalies;
+    }
+
+    private void runLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    poll();
+                } catch (NoSuchFileException e) {
+                    // WAL文件在检查点截断或最后一个连接关闭时会被删除
+                    resetGeneration(null);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("WAL monitor poll failed", e);
+                }
+                reportIfDue();
+                Thread.sleep(pollMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("WAL monitor interrupted");
+        }
+    }
+
+    /**
+     * 一次轮询：检查文件头是否换代，然后从上次位置开始校验新追加的帧
+     */
+    private void poll() throws IOException {
+        if (!walFile.exists()) {
+            resetGeneration(null);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(walFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            maxWalSize = Math.max(maxWalSize, size);
+            if (size < WalFrameVerifier.HEADER_SIZE) {
+                resetGeneration(null);
+                return;
+            }
+
+            ByteBuffer header = readFully(channel, 0, WalFrameVerifier.HEADER_SIZE);
+            if (currentHeader == null || !currentHeader.equals(header)) {
+                startGeneration(header);
+            } else if (verifier == null) {
+                confirmInvalidHeader();
+            }
+            if (verifier == null) {
+                return;
+            }
+
+            int pageSize = verifier.getPageSize();
+            long frameSize = WalFrameVerifier.FRAME_HEADER_SIZE + (long) pageSize;
+            while (WalFrameVerifier.frameOffset(nextFrame, pageSize) + frameSize <= size) {
+                long offset = WalFrameVerifier.frameOffset(nextFrame, pageSize);
+                ByteBuffer frameHeader = readFully(channel, offset, WalFrameVerifier.FRAME_HEADER_SIZE);
+                ByteBuffer page = readFully(channel, offset + WalFrameVerifier.FRAME_HEADER_SIZE, pageSize);
+                WalFrameVerifier.FrameStatus status = verifier.verifyFrame(frameHeader, page);
+
+                if (status == WalFrameVerifier.FrameStatus.VALID || status == WalFrameVerifier.FrameStatus.VALID_COMMIT) {
+                    if (pendingBadFrame == nextFrame) {
+                        logger.debug("WAL frame {} became valid after {} polls (was being written)", nextFrame, pendingBadPolls);
+                    }
+                    pendingBadFrame = 0;
+                    pendingBadPolls = 0;
+                    totalFrames++;
+                    intervalFrames++;
+                    if (status == WalFrameVerifier.FrameStatus.VALID_COMMIT) {
+                        totalCommits++;
+                        intervalCommits++;
+                    }
+                    nextFrame++;
+                    continue;
+                }
+
+                // verifyFrame已经推进了帧计数，回退以便下次重新校验同一帧
+                verifier.rewindFrame();
+                if (status == WalFrameVerifier.FrameStatus.SALT_MISMATCH) {
+                    // 上一代遗留的帧：当前写入位置之后的正常内容
+                    break;
+                }
+                handleBadFrame(channel, size, status, frameSize);
+                break;
+            }
+        }
+    }
+
+    /**
+     * salt正确但校验失败的帧可能正在被写入，连续多次轮询都不变才认定为撕裂帧
+     */
+    private void handleBadFrame(FileChannel channel, long size, WalFrameVerifier.FrameStatus status, long frameSize)
+            throws IOException {
+        if (pendingBadFrame != nextFrame) {
+            pendingBadFrame = nextFrame;
+            pendingBadPolls = 1;
+            return;
+        }
+        pendingBadPolls++;
+        if (pendingBadPolls != confirmPolls) {
+            return;
+        }
+
+        anomalies++;
+        int pageSize = verifier.getPageSize();
+        long offset = WalFrameVerifier.frameOffset(nextFrame, pageSize);
+        String detail = "";
+        long followingOffset = offset + frameSize;
+        if (followingOffset + WalFrameVerifier.FRAME_HEADER_SIZE <= size) {
+            ByteBuffer following = readFully(channel, followingOffset, WalFrameVerifier.FRAME_HEADER_SIZE);
+            if (following.getInt(8) == verifier.getSalt1() && following.getInt(12) == verifier.getSalt2()) {
+                detail = "; later frames of the same generation follow it and will be ignored by SQLite (possible lost commits)";
+            }
+        }
+        logger.error("WAL anomaly: torn frame {} ({}) at offset {}, last good commit frame {}{}",
+                     nextFrame, status, offset, verifier.getLastCommitFrame(), detail);
+    }
+
+    private void startGeneration(ByteBuffer header) {
+        WalFrameVerifier next = new WalFrameVerifier();
+        String error = next.readHeader(header);
+        if (error != null) {
+            // 文件头可能正被重写，连续多次轮询都不变才认定为损坏
+            logger.debug("WAL header not valid yet: {}", error);
+            currentHeader = header;
+            verifier = null;
+            invalidHeaderError = error;
+            invalidHeaderPolls = 0;
+            confirmInvalidHeader();
+            return;
+        }
+        // 检查点序号由重置WAL的连接写入，不同连接各自计数，不能作为全局单调的序号比较
+        if (verifier != null && nextFrame > 1 && pendingBadFrame == 0) {
+            logger.debug("WAL restarted after {} frames (checkpoint sequence {} -> {})", nextFrame - 1,
+                         verifier.getCheckpointSequence(), next.getCheckpointSequence());
+        }
+        generations++;
+        currentHeader = header;
+        verifier = next;
+        nextFrame = 1;
+        pendingBadFrame = 0;
+        pendingBadPolls = 0;
+        invalidHeaderPolls = 0;
+    }
+
+    /**
+     * 同一个无效文件头连续出现confirmPolls次时报告一次
+     */
+    private void confirmInvalidHeader() {
+        invalidHeaderPolls++;
+        if (invalidHeaderPolls == confirmPolls) {
+            anomalies++;
+            logger.error("WAL anomaly: WAL header stayed invalid for {} polls: {}", invalidHeaderPolls,
+                         invalidHeaderError);
+        }
+    }
+
+    private void resetGeneration(ByteBuffer header) {
+        currentHeader = header;
+        verifier = null;
+        nextFrame = 1;
+        pendingBadFrame = 0;
+        pendingBadPolls = 0;
+        invalidHeaderPolls = 0;
+    }
+
+    private void reportIfDue() {
+        long now = System.currentTimeMillis();
+        if (reportMillis <= 0 || now - intervalStartMillis < reportMillis) {
+            return;
+        }
+        long size = walFile.length();
+        double seconds = (now - intervalStartMillis) / 1000.0;
+        logger.info("WAL monitor: size {} bytes ({} bytes/s), {} frames/s, {} commits/s, generation {}, frame {}",
+                    size, String.format("%+.0f", (size - intervalStartSize) / seconds),
+                    String.format("%.1f", intervalFrames / seconds), String.format("%.1f", intervalCommits / seconds),
+                    generations, nextFrame - 1);
+        intervalStartMillis = now;
+        intervalStartSize = size;
+        intervalFrames = 0;
+        intervalCommits = 0;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("WAL file shrank while reading at offset " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,55 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 工作负载种子 - 主进程确定一个基础种子并通过nfs.test.workload.seed传给子进程，
+ * 每个进程按自己的名称派生独立的随机序列，同一种子下各进程生成的查询条件、年龄和数据完全相同
+ * 派生的随机数只能用于工作负载数据：休眠和退避抖动的次数取决于锁竞争，必须使用不带种子的随机数
+ */
+public final class WorkloadSeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadSeed.class);
+    private static final String SEED_KEY = "workload.seed";
+    private static boolean logged;
+
+    private WorkloadSeed() {
+    }
+
+    /**
+     * 返回本次运行的基础种子；没有指定时生成一个并写回系统属性，使子进程使用同一个种子
+     */
+    public static synchronized long resolve() {
+        Long seed = TestOptions.getWorkloadSeed();
+        if (seed == null) {
+            seed = ThreadLocalRandom.current().nextLong();
+            System.setProperty(TestOptions.PREFIX + SEED_KEY, String.valueOf(seed));
+        }
+        if (!logged) {
+            logged = true;
+            logger.info("Workload seed: {} (rerun with -D{}{}={})", seed, TestOptions.PREFIX, SEED_KEY, seed);
+        }
+        return seed;
+    }
+
+    /**
+     * 为指定进程（或用途）创建独立的随机数生成器
+     */
+    public static Random forProcess(String processName) {
+        return new Random(derive(resolve(), processName));
+    }
+
+    /**
+     * 用SplitMix64混合基础种子和名称，名称相近的进程也得到互不相关的序列
+     */
+    static long derive(long seed, String name) {
+        long z = seed + 0x9E3779B97F4A7C15L * (name.hashCode() + 1L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,93 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.io.PrintStream;
+
+/**
+ * 写入者序号 - 子进程给每一行分配单调递增的序号，并记录已确认提交的最大序号
+ * 已确认序号通过标准输出以单行文本传给主进程，格式：@SEQUENCE writer=name committed=N
+ * 最终校验时，序号不大于已确认值却在表中找不到的行就是丢失的写入
+ */
+public class WriteSequence {
+
+    public static final String LINE_PREFIX = "@SEQUENCE ";
+
+    private final String writer;
+    private long issued;
+    private volatile long committed;
+
+    public WriteSequence(String writer) {
+        this(writer, 0);
+    }
+
+    private WriteSequence(String writer, long committed) {
+        this.writer = writer;
+        this.issued = committed;
+        this.committed = committed;
+    }
+
+    /**
+     * 分配下一个序号（只由工作线程调用）
+     */
+    public long next() {
+        return ++issued;
+    }
+
+    /**
+     * 收回最后分配但没有写入的序号（放弃重试时），下一行重用该序号
+     */
+    public void release(long sequence) {
+        if (sequence == issued) {
+            issued--;
+        }
+    }
+
+    /**
+     * 写入语句成功返回（自动提交已完成）后确认该序号
+     */
+    public void commit(long sequence) {
+        if (sequence > committed) {
+            committed = sequence;
+        }
+    }
+
+    public void report(PrintStream out) {
+        out.println(toLine());
+        out.flush();
+    }
+
+    public static boolean isSequenceLine(String line) {
+        return line != null && line.startsWith(LINE_PREFIX);
+    }
+
+    public String toLine() {
+        return LINE_PREFIX + "writer=" + writer + " committed=" + committed;
+    }
+
+    public static WriteSequence parse(String line) {
+        String writer = null;
+        Long committed = null;
+        for (String token : line.substring(LINE_PREFIX.length()).trim().split(" ")) {
+            if (token.startsWith("writer=")) {
+                writer = token.substring("writer=".length());
+            } else if (token.startsWith("committed=")) {
+                try {
+                    committed = Long.parseLong(token.substring("committed=".length()));
+                } catch (NumberFormatException e) {
+                    throw new NfsTestException("Malformed sequence line: " + line, e);
+                }
+            }
+        }
+        if (writer == null || committed == null) {
+            throw new NfsTestException("Malformed sequence line: " + line);
+        }
+        return new WriteSequence(writer, committed);
+    }
+
+    public String getWriter() {
+        return writer;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+}
@@ -0,0 +1,85 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import java.io.PrintStream;
+
+/**
+ * 子进程写入指标记录器
+ * 工作线程记录每次写入的耗时，后台线程按固定间隔把区间快照输出给主进程
+ */
+public class WriterMetrics {
+
+    private final String processName;
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private long intervalStart = System.currentTimeMillis();
+    private long errors;
+    private long busyErrors;
+    private Thread reporter;
+
+    public WriterMetrics(String processName) {
+        this.processName = processName;
+    }
+
+    public synchronized void recordOperation(long nanos) {
+        interval.recordNanos(nanos);
+    }
+
+    public synchronized void recordError(Throwable error) {
+        errors++;
+        if (NfsTestException.isBusy(error)) {
+            busyErrors++;
+        }
+    }
+
+    /**
+     * 取出当前区间的快照并开始新的区间
+     */
+    public synchronized MetricsSnapshot snapshotAndReset() {
+        long now = System.currentTimeMillis();
+        MetricsSnapshot snapshot = new MetricsSnapshot(processName, intervalStart, now, interval.getCount(),
+            errors, busyErrors, interval.getPercentileMicros(50), interval.getPercentileMicros(99),
+            interval.getMaxMicros());
+        interval.reset();
+        errors = 0;
+        busyErrors = 0;
+        intervalStart = now;
+        return snapshot;
+    }
+
+    /**
+     * 启动后台上报线程，intervalMillis小于等于0时不上报
+     */
+    public void startReporter(long intervalMillis, PrintStream out) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        reporter = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervalMillis);
+                    out.println(snapshotAndReset().toLine());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, processName + "-MetricsReporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * 停止上报并输出最后一个区间
+     */
+    public void stopReporter(PrintStream out) {
+        if (reporter == null) {
+            return;
+        }
+        reporter.interrupt();
+        try {
+            reporter.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.println(snapshotAndReset().toLine());
+        out.flush();
+    }
+}
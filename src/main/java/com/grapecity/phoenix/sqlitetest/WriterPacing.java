@@ -0,0 +1,105 @@
+package com.grapecity.phoenix.sqlitetest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * 子进程写入节奏 - 自适应模式下由主进程通过标准输入下发，格式：@PACING active=true delay.us=N
+ * active=false时写入者暂停写入，delay.us为两次插入之间的休眠
+ */
+public class WriterPacing {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriterPacing.class);
+    public static final String LINE_PREFIX = "@PACING ";
+    private static final long PAUSED_POLL_MILLIS = 50;
+
+    private volatile boolean active;
+    private volatile long delayMicros;
+
+    public WriterPacing(boolean active, long delayMicros) {
+        this.active = active;
+        this.delayMicros = delayMicros;
+    }
+
+    public static String toLine(boolean active, long delayMicros) {
+        return LINE_PREFIX + "active=" + active + " delay.us=" + delayMicros;
+    }
+
+    public static boolean isPacingLine(String line) {
+        return line != null && line.startsWith(LINE_PREFIX);
+    }
+
+    /**
+     * 应用一条主进程下发的节奏指令
+     */
+    public void apply(String line) {
+        for (String token : line.substring(LINE_PREFIX.length()).trim().split(" ")) {
+            if (token.startsWith("active=")) {
+                active = Boolean.parseBoolean(token.substring("active=".length()));
+            } else if (token.startsWith("delay.us=")) {
+                try {
+                    delayMicros = Math.max(0, Long.parseLong(token.substring("delay.us=".length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring malformed pacing line: {}", line);
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动后台线程读取主进程下发的指令
+     */
+    public void listen(InputStream in, String processName) {
+        Thread listener = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (isPacingLine(line)) {
+                        apply(line);
+                        logger.debug("Process {} pacing changed: active={}, delay={}us", processName, active, delayMicros);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Process {} stopped reading pacing commands", processName, e);
+            }
+        }, processName + "-PacingListener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * 暂停期间阻塞，直到被激活或到达截止时间；返回false表示到截止时间仍处于暂停状态
+     */
+    public boolean awaitActive(long deadlineMillis) throws InterruptedException {
+        while (!active) {
+            if (System.currentTimeMillis() >= deadlineMillis) {
+                return false;
+            }
+            Thread.sleep(PAUSED_POLL_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * 两次插入之间的休眠
+     */
+    public void pause() throws InterruptedException {
+        long micros = delayMicros;
+        if (micros > 0) {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getDelayMicros() {
+        return delayMicros;
+    }
+}